@@ -20,6 +20,8 @@ import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
 import net.adoptopenjdk.icedteaweb.xmlparser.Node;
 import net.adoptopenjdk.icedteaweb.xmlparser.ParseException;
 import net.sourceforge.jnlp.SecurityDesc.RequestedPermissionLevel;
+import net.sourceforge.jnlp.cache.CacheUtil;
+import net.sourceforge.jnlp.cache.DescriptorSnapshot;
 import net.sourceforge.jnlp.cache.ResourceTracker;
 import net.sourceforge.jnlp.cache.UpdatePolicy;
 import net.sourceforge.jnlp.runtime.JNLPClassLoader;
@@ -31,6 +33,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -233,9 +236,8 @@ public class JNLPFile {
      * @throws ParseException if the JNLP file was invalid
      */
     protected JNLPFile(URL location, Version version, ParserSettings settings, UpdatePolicy policy, URL forceCodebase) throws IOException, ParseException {
-        InputStream input = openURL(location, version, policy);
         this.parserSettings = settings;
-        parse(input, location, forceCodebase);
+        parse(getRootNode(location, version, policy, settings), location, forceCodebase);
 
         //Downloads the original jnlp file into the cache if possible
         //(i.e. If the jnlp file being launched exist locally, but it
@@ -311,17 +313,48 @@ public class JNLPFile {
      * @throws java.io.IOException  if something goes wrong
      */
     public static InputStream openURL(URL location, Version version, UpdatePolicy policy) throws IOException {
+        return new FileInputStream(getCacheFile(location, version, policy));
+    }
+
+    /**
+     * Returns the cached file of the jnlp file URL, downloading it to the
+     * cache unless it is there already.
+     *
+     * @param location of resource to open
+     * @param version of resource
+     * @param policy update policy of resource
+     * @return the cached file
+     * @throws java.io.IOException if something goes wrong
+     */
+    private static File getCacheFile(URL location, Version version, UpdatePolicy policy) throws IOException {
         if (location == null || policy == null)
             throw new IllegalArgumentException(R("NullParameter"));
 
+        File f;
         try {
             ResourceTracker tracker = new ResourceTracker(false); // no prefetch
             tracker.addResource(location, version, null, policy);
-            File f = tracker.getCacheFile(location);
-            return new FileInputStream(f);
+            f = tracker.getCacheFile(location);
         } catch (Exception ex) {
             throw new IOException(ex);
         }
+        if (f == null) {
+            throw new FileNotFoundException(location.toString());
+        }
+        return f;
+    }
+
+    /**
+     * Parses the xml of the JNLP file. A cached JNLP file which did not
+     * change since it was parsed the last time is not parsed again, see
+     * {@link DescriptorSnapshot}.
+     */
+    private static Node getRootNode(URL location, Version version, UpdatePolicy policy, ParserSettings settings) throws IOException, ParseException {
+        File f = getCacheFile(location, version, policy);
+        if (CacheUtil.isCacheable(location, version)) {
+            return DescriptorSnapshot.getRootNode(f, settings);
+        }
+        return Parser.getRootNode(new FileInputStream(f), settings);
     }
 
     /**
@@ -864,11 +897,20 @@ public class JNLPFile {
      * @param location the file location or {@code null}
      */
     private void parse(InputStream input, URL location, URL forceCodebase) throws ParseException {
+        parse(Parser.getRootNode(input, parserSettings), location, forceCodebase);
+    }
+
+    /**
+     * Initialize the JNLPFile fields from the parsed xml.
+     *
+     * @param root the root node of the JNLP file
+     * @param location the file location or {@code null}
+     */
+    private void parse(Node root, URL location, URL forceCodebase) throws ParseException {
         try {
             //if (location != null)
             //  location = new URL(location, "."); // remove filename
 
-            Node root = Parser.getRootNode(input, parserSettings);
             Parser parser = new Parser(this, location, root, parserSettings, forceCodebase); // true == allow extensions
 
             // JNLP tag information
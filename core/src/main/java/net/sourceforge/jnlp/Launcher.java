@@ -18,6 +18,7 @@ package net.sourceforge.jnlp;
 
 import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
 import net.sourceforge.jnlp.cache.CacheUtil;
+import net.sourceforge.jnlp.cache.ClassDataSharingArchive;
 import net.sourceforge.jnlp.cache.UpdatePolicy;
 import net.sourceforge.jnlp.runtime.AppletInstance;
 import net.sourceforge.jnlp.runtime.ApplicationInstance;
@@ -525,7 +526,12 @@ public class Launcher {
                 List<String> netxArguments = new LinkedList<String>();
                 netxArguments.add("-Xnofork");
                 netxArguments.addAll(JNLPRuntime.getInitialArguments());
-                launchExternal(file.getNewVMArgs(), netxArguments);
+                List<String> vmArgs = new LinkedList<String>(file.getNewVMArgs());
+                ClassDataSharingArchive archive = ClassDataSharingArchive.forApplication(file);
+                if (archive != null) {
+                    vmArgs.addAll(archive.getVMArgs());
+                }
+                launchExternal(vmArgs, netxArguments);
                 return null;
             }
 
@@ -1084,29 +1084,14 @@ public final class Parser {
      * Returns the first child node with the specified name.
      */
     private static Node getChildNode(Node node, String name) {
-        Node[] result = getChildNodes(node, name);
-        if (result.length == 0) {
-            return null;
-        } else {
-            return result[0];
-        }
+        return node.getChildNode(name);
     }
 
     /**
      * Returns all child nodes with the specified name.
      */
     private static Node[] getChildNodes(Node node, String name) {
-        List<Node> result = new ArrayList<>();
-
-        Node child = node.getFirstChild();
-        while (child != null) {
-            if (child.getNodeName().getName().equals(name)) {
-                result.add(child);
-            }
-            child = child.getNextSibling();
-        }
-
-        return result.toArray(new Node[result.size()]);
+        return node.getChildNodes(name);
     }
 
     /**
@@ -41,6 +41,11 @@ public class CacheEntry {
     private static final String KEY_CONTENT_LENGTH = "content-length";
     private static final String KEY_LAST_MODIFIED = "last-modified";
     private static final String KEY_LAST_UPDATED = "last-updated";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_PARTIAL_VALIDATOR = "partial-validator";
+    private static final String KEY_PACKAGE_INDEX = "package-index";
+    private static final String KEY_LAZY_JAR_TRACE = "lazy-jar-trace";
+    private static final String KEY_VERIFIED_JAR = "verified-jar";
     public static final String KEY_JNLP_PATH = "jnlp-path";
 
     /** the remote resource location */
@@ -115,6 +120,92 @@ public class CacheEntry {
         setLongKey(KEY_LAST_MODIFIED, modifyTime);
     }
 
+    /**
+     * Returns the entity tag the server sent with the cached contents.
+     * @return the ETag, or null if the server did not send any
+     */
+    public String getETag() {
+        return properties.getProperty(KEY_ETAG);
+    }
+
+    public void setETag(String etag) {
+        if (etag == null) {
+            properties.remove(KEY_ETAG);
+        } else {
+            properties.setProperty(KEY_ETAG, etag);
+        }
+    }
+
+    /**
+     * Returns the validator of a download which was interrupted before the
+     * cached file was complete. It is sent as If-Range header when the
+     * download is resumed.
+     * @return the validator, or null if the cached file is not partial
+     */
+    public String getPartialValidator() {
+        return properties.getProperty(KEY_PARTIAL_VALIDATOR);
+    }
+
+    public void setPartialValidator(String validator) {
+        if (validator == null) {
+            properties.remove(KEY_PARTIAL_VALIDATOR);
+        } else {
+            properties.setProperty(KEY_PARTIAL_VALIDATOR, validator);
+        }
+    }
+
+    /**
+     * Returns the packages found in the cached jar when it was last used, so
+     * the class loader knows which jar to load for a class before the jar is
+     * opened.
+     * @return the encoded package index, or null if the jar was not indexed
+     */
+    public String getPackageIndex() {
+        return properties.getProperty(KEY_PACKAGE_INDEX);
+    }
+
+    public void setPackageIndex(String index) {
+        if (index == null) {
+            properties.remove(KEY_PACKAGE_INDEX);
+        } else {
+            properties.setProperty(KEY_PACKAGE_INDEX, index);
+        }
+    }
+
+    /**
+     * Returns the lazy jars whose classes were used when the application of
+     * this main jar last ran, so they can be downloaded in advance.
+     * @return the encoded trace, or null if none was recorded
+     */
+    public String getLazyJarTrace() {
+        return properties.getProperty(KEY_LAZY_JAR_TRACE);
+    }
+
+    public void setLazyJarTrace(String trace) {
+        if (trace == null) {
+            properties.remove(KEY_LAZY_JAR_TRACE);
+        } else {
+            properties.setProperty(KEY_LAZY_JAR_TRACE, trace);
+        }
+    }
+
+    /**
+     * Returns what the signature verification of this jar found, together
+     * with the digest of the jar it was found in.
+     * @return the encoded verification, or null if the jar was not verified
+     */
+    public String getVerifiedJar() {
+        return properties.getProperty(KEY_VERIFIED_JAR);
+    }
+
+    public void setVerifiedJar(String verifiedJar) {
+        if (verifiedJar == null) {
+            properties.remove(KEY_VERIFIED_JAR);
+        } else {
+            properties.setProperty(KEY_VERIFIED_JAR, verifiedJar);
+        }
+    }
+
     private long getLongKey(String key) {
         try {
             return Long.parseLong(properties.getProperty(key));
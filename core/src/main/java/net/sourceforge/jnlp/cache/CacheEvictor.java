@@ -0,0 +1,192 @@
+package net.sourceforge.jnlp.cache;
+
+import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
+import net.sourceforge.jnlp.config.DeploymentConfiguration;
+import net.sourceforge.jnlp.runtime.JNLPRuntime;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the cache within {@link DeploymentConfiguration#KEY_CACHE_MAX_SIZE}
+ * and {@link DeploymentConfiguration#KEY_CACHE_MAX_SIZE_PER_DOMAIN} while
+ * applications run. The entries of the recently_used LRU are walked from the
+ * most recently used one, and every entry which does not fit into the budget
+ * any more is evicted, unless its file belongs to a resource still in use in
+ * this JVM - such as the jars of a live JNLPClassLoader.
+ * <p>
+ * Entries whose file does not exist are left alone, as they may be just
+ * being downloaded; {@link CacheUtil#cleanCache()} removes the stale ones.
+ * </p>
+ * <p>
+ * The files used by other JVMs sharing the cache are not known, so the
+ * background eviction is only run when it is enabled explicitly, for a cache
+ * used by a single application at a time.
+ * </p>
+ */
+public class CacheEvictor {
+
+    private final static Logger LOG = LoggerFactory.getLogger(CacheEvictor.class);
+
+    private static class CacheEvictorHolder {
+
+        private static final CacheEvictor INSTANCE = new CacheEvictor(CacheLRUWrapper.getInstance(),
+                CachedDaemonThreadPoolProvider.DAEMON_THREAD_POOL);
+    }
+
+    public static CacheEvictor getInstance() {
+        return CacheEvictorHolder.INSTANCE;
+    }
+
+    private final CacheLRUWrapper lruHandler;
+    private final Executor executor;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    CacheEvictor(CacheLRUWrapper lruHandler, Executor executor) {
+        this.lruHandler = lruHandler;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the eviction in background, unless it is disabled by
+     * {@link DeploymentConfiguration#KEY_CACHE_BACKGROUND_EVICTION} or there
+     * is no budget to enforce. Requests arriving while an eviction is waiting
+     * to run are merged into it.
+     */
+    public void scheduleEviction() {
+        if (!Boolean.parseBoolean(JNLPRuntime.getConfiguration().getProperty(DeploymentConfiguration.KEY_CACHE_BACKGROUND_EVICTION))) {
+            return;
+        }
+        if (getBudget(DeploymentConfiguration.KEY_CACHE_MAX_SIZE) < 0 && getBudget(DeploymentConfiguration.KEY_CACHE_MAX_SIZE_PER_DOMAIN) < 0) {
+            return;
+        }
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                scheduled.set(false);
+                try {
+                    evict();
+                } catch (Exception ex) {
+                    LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Evicts entries over the configured budgets.
+     *
+     * @return number of bytes reclaimed
+     */
+    public long evict() {
+        return evict(getBudget(DeploymentConfiguration.KEY_CACHE_MAX_SIZE),
+                getBudget(DeploymentConfiguration.KEY_CACHE_MAX_SIZE_PER_DOMAIN),
+                Resource.getLocalFilesInUse());
+    }
+
+    /**
+     * @param maxSize maximal size of the cache in bytes, negative for unlimited
+     * @param maxDomainSize maximal size of a single host in bytes, negative for unlimited
+     * @param inUse files which must not be evicted
+     * @return number of bytes reclaimed
+     */
+    long evict(long maxSize, long maxDomainSize, Set<File> inUse) {
+        if (maxSize < 0 && maxDomainSize < 0) {
+            return 0;
+        }
+        final List<File> remove = new ArrayList<>();
+        long reclaimed = 0;
+        synchronized (lruHandler) {
+            lruHandler.lock();
+            try {
+                lruHandler.load();
+                final String cacheDir = lruHandler.getCacheDir().getFullPath();
+                final Map<String, Long> domainSizes = new HashMap<>();
+                long size = 0;
+                for (Entry<String, String> e : lruHandler.getLRUSortedEntries()) {
+                    final File file = new File(e.getValue());
+                    final String[] parts = getRelativeParts(cacheDir, file);
+                    if (parts == null || !file.isFile()) {
+                        continue;
+                    }
+                    final long length = file.length();
+                    final String domain = parts[2];
+                    final Long domainSize = domainSizes.get(domain);
+                    final long currentDomainSize = domainSize == null ? 0 : domainSize;
+
+                    boolean overBudget = (maxSize >= 0 && size + length > maxSize)
+                            || (maxDomainSize >= 0 && currentDomainSize + length > maxDomainSize);
+                    if (overBudget && !inUse.contains(file)) {
+                        LOG.debug("Evicting {} ({} bytes) from cache", file, length);
+                        lruHandler.removeEntry(e.getKey());
+                        remove.add(new File(cacheDir, parts[0]));
+                        reclaimed += length;
+                        continue;
+                    }
+                    size += length;
+                    domainSizes.put(domain, currentDomainSize + length);
+                }
+                if (!remove.isEmpty()) {
+                    lruHandler.store();
+                }
+            } finally {
+                lruHandler.unlock();
+            }
+        }
+
+        for (File dir : remove) {
+            try {
+                FileUtils.recursiveDelete(dir, dir);
+            } catch (IOException ex) {
+                LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+            }
+        }
+        if (!remove.isEmpty()) {
+            LOG.info("Evicted {} cache entries, reclaimed {} bytes", remove.size(), reclaimed);
+        }
+        return reclaimed;
+    }
+
+    /**
+     * @return indexed folder, protocol and host of the cached file, or null
+     * if the file is not stored in the cache directory
+     */
+    private static String[] getRelativeParts(String cacheDir, File file) {
+        final String path = file.getPath();
+        if (!path.startsWith(cacheDir + File.separator)) {
+            return null;
+        }
+        final String[] parts = path.substring(cacheDir.length() + 1).split(Pattern.quote(File.separator));
+        if (parts.length < 4) {
+            return null;
+        }
+        return parts;
+    }
+
+    /**
+     * @return the budget in bytes, negative for unlimited
+     */
+    private static long getBudget(String key) {
+        try {
+            long megabytes = Long.parseLong(JNLPRuntime.getConfiguration().getProperty(key));
+            return megabytes < 0 ? -1 : megabytes << 20;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
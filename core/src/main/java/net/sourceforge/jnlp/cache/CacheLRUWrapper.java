@@ -46,15 +46,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 
 import static net.sourceforge.jnlp.runtime.Translator.R;
 
@@ -112,6 +118,37 @@ public class CacheLRUWrapper {
 
     
     private PropertiesFile cachedRecentlyUsedPropertiesFile = null ;
+
+    /** journal of the changes not yet part of cachedRecentlyUsedPropertiesFile on disk */
+    private RecentlyUsedJournal cachedJournal = null;
+    /** position in the journal up to which the records are applied */
+    private long journalOffset = 0;
+    /** records of the changes done since the last store */
+    private final List<String> pendingRecords = new ArrayList<>();
+    /** the changes can not be expressed by records, the snapshot must be rewritten */
+    private boolean compactionNeeded = false;
+
+    /** the journal is compacted once it grows over this size and the size of the snapshot */
+    private static final long JOURNAL_COMPACTION_MIN_LENGTH = 64 * 1024;
+
+    /**
+     * Index of the keys, newest first, for each path of a cache item within
+     * its indexed folder, so lookups do not have to sort and scan all
+     * entries. It follows the changes of the entries and is only rebuilt
+     * after the snapshot was read again.
+     */
+    private final Map<String, NavigableSet<String>> keysByUrlPath = new HashMap<>();
+    private boolean urlPathIndexValid = false;
+    private int urlPathIndexedEntries = 0;
+
+    private static final Comparator<String> NEWEST_KEY_FIRST = new Comparator<String>() {
+        @Override
+        public int compare(String k1, String k2) {
+            int c = Long.compare(getKeyTime(k2), getKeyTime(k1));
+            return c != 0 ? c : k1.compareTo(k2);
+        }
+    };
+
     /**
      * @return the recentlyUsedPropertiesFile
      */
@@ -119,6 +156,9 @@ public class CacheLRUWrapper {
         if (cachedRecentlyUsedPropertiesFile == null) {
             //no properties file yet, create it
             cachedRecentlyUsedPropertiesFile = new PropertiesFile(recentlyUsedPropertiesFile.getFile());
+            cachedJournal = new RecentlyUsedJournal(recentlyUsedPropertiesFile.getFile());
+            journalOffset = 0;
+            urlPathIndexValid = false;
             return cachedRecentlyUsedPropertiesFile;
         } 
         if (recentlyUsedPropertiesFile.getFile().equals(cachedRecentlyUsedPropertiesFile.getStoreFile())){
@@ -128,9 +168,14 @@ public class CacheLRUWrapper {
             //the InfrastructureFileDescriptor was set to different location, move to it
             if (cachedRecentlyUsedPropertiesFile.tryLock()) {
                 cachedRecentlyUsedPropertiesFile.store();
+                cachedJournal.truncate();
                 cachedRecentlyUsedPropertiesFile.unlock();
             }
             cachedRecentlyUsedPropertiesFile = new PropertiesFile(recentlyUsedPropertiesFile.getFile());
+            cachedJournal = new RecentlyUsedJournal(recentlyUsedPropertiesFile.getFile());
+            journalOffset = 0;
+            pendingRecords.clear();
+            urlPathIndexValid = false;
             return cachedRecentlyUsedPropertiesFile;
         }
         
@@ -158,13 +203,50 @@ public class CacheLRUWrapper {
        private static final CacheLRUWrapper INSTANCE = new CacheLRUWrapper();
    }
 
+    synchronized RecentlyUsedJournal getJournal() {
+        getRecentlyUsedPropertiesFile();
+        return cachedJournal;
+    }
+
     /**
-     * Update map for keeping track of recently used items.
+     * Update map for keeping track of recently used items. The snapshot is
+     * only read again if it changed on disk, otherwise just the records
+     * appended to the journal since the last load are replayed.
      */
     public synchronized void load() {
-        boolean loaded = getRecentlyUsedPropertiesFile().load();
+        PropertiesFile props = getRecentlyUsedPropertiesFile();
+        RecentlyUsedJournal journal = getJournal();
+        boolean loaded = props.load();
+        if (loaded || journal.length() < journalOffset) {
+            // snapshot rewritten or journal compacted by someone else, start over from both
+            props.clear();
+            if (props.getStoreFile().exists()) {
+                try (InputStream in = new FileInputStream(props.getStoreFile())) {
+                    props.load(in);
+                } catch (IOException ex) {
+                    LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+                }
+            }
+            journalOffset = 0;
+            loaded = true;
+            // the index is built again on the next lookup
+            urlPathIndexValid = false;
+        }
+        Map<Object, Object> indexed = new IndexedEntries(props);
+        long replayedTo = journal.replay(indexed, journalOffset);
+        if (replayedTo != journalOffset) {
+            journalOffset = replayedTo;
+            loaded = true;
+        }
+        if (loaded) {
+            // changes of this instance not stored yet stay on top
+            for (String record : pendingRecords) {
+                RecentlyUsedJournal.apply(indexed, record);
+            }
+        }
         /* 
-         * clean up possibly corrupted entries
+         * clean up possibly corrupted entries, both of the snapshot and of the
+         * journal, which may have been left by a crashed process
          */
         if (loaded && checkData()) {
             LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, new LruCacheException());
@@ -180,6 +262,16 @@ public class CacheLRUWrapper {
      * @return true, if cache was corrupted and affected entry removed
      */
     private boolean checkData () {
+        boolean modified = removeCorruptedEntries();
+        if (modified) {
+            // removals are not recorded, the snapshot will be rewritten
+            compactionNeeded = true;
+            urlPathIndexValid = false;
+        }
+        return modified;
+    }
+
+    private boolean removeCorruptedEntries() {
         boolean modified = false;
         Set<Entry<Object, Object>> q = getRecentlyUsedPropertiesFile().entrySet();
         for (Iterator<Entry<Object, Object>> it = q.iterator(); it.hasNext();) {
@@ -219,11 +311,54 @@ public class CacheLRUWrapper {
      * @return true if properties were successfully stored, false otherwise
      */
     public synchronized boolean store() {
-        if (getRecentlyUsedPropertiesFile().isHeldByCurrentThread()) {
-            getRecentlyUsedPropertiesFile().store();
+        if (!getRecentlyUsedPropertiesFile().isHeldByCurrentThread()) {
+            return false;
+        }
+        RecentlyUsedJournal journal = getJournal();
+        long length = journal.length();
+        if (compactionNeeded || length > Math.max(JOURNAL_COMPACTION_MIN_LENGTH, getRecentlyUsedPropertiesFile().getStoreFile().length())) {
+            compact();
             return true;
         }
-        return false;
+        if (!pendingRecords.isEmpty()) {
+            if (!journal.append(pendingRecords)) {
+                compact();
+                return true;
+            }
+            if (length == journalOffset) {
+                // nobody else appended since the last load, our records are applied already
+                journalOffset = journal.length();
+            }
+            pendingRecords.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Writes all entries into the snapshot and empties the journal. Does
+     * nothing if the lock of the file is not held.
+     *
+     * @return true if the entries were successfully stored, false otherwise
+     */
+    public synchronized boolean compact() {
+        PropertiesFile props = getRecentlyUsedPropertiesFile();
+        if (!props.isHeldByCurrentThread()) {
+            return false;
+        }
+        props.store();
+        getJournal().truncate();
+        journalOffset = 0;
+        pendingRecords.clear();
+        compactionNeeded = false;
+        return true;
+    }
+
+    private void record(String record) {
+        if (record == null) {
+            compactionNeeded = true;
+        } else {
+            pendingRecords.add(record);
+        }
     }
 
     /**
@@ -239,6 +374,8 @@ public class CacheLRUWrapper {
             return false;
         }
         props.setProperty(key, path);
+        record(RecentlyUsedJournal.put(key, path));
+        indexUrlPath(key, path);
         return true;
     }
 
@@ -253,7 +390,9 @@ public class CacheLRUWrapper {
         if (!props.containsKey(key)) {
             return false;
         }
-        props.remove(key);
+        String path = (String) props.remove(key);
+        record(RecentlyUsedJournal.remove(key));
+        unindexUrlPath(key, path);
         return true;
     }
 
@@ -278,10 +417,138 @@ public class CacheLRUWrapper {
         String folder = getIdForCacheFolder(value);
 
         props.remove(oldKey);
-        props.setProperty(Long.toString(System.currentTimeMillis()) + "," + folder, value);
+        String newKey = Long.toString(System.currentTimeMillis()) + "," + folder;
+        props.setProperty(newKey, value);
+        record(RecentlyUsedJournal.remove(oldKey));
+        record(RecentlyUsedJournal.put(newKey, value));
+        unindexUrlPath(oldKey, value);
+        indexUrlPath(newKey, value);
         return true;
     }
 
+    /**
+     * Returns the key of the most recently used entry whose file has the
+     * given path within its indexed folder.
+     *
+     * @param urlPath path of cache item within its indexed folder, as
+     * returned by {@link CacheUtil#urlToPath(java.net.URL, String)} with an
+     * empty subdirectory
+     * @return the key of the newest matching entry, null if there is none
+     */
+    public synchronized String getNewestKeyForUrlPath(String urlPath) {
+        PropertiesFile props = getRecentlyUsedPropertiesFile();
+        if (!urlPathIndexValid || urlPathIndexedEntries != props.size()) {
+            rebuildUrlPathIndex(props);
+        }
+        NavigableSet<String> keys = keysByUrlPath.get(urlPath);
+        return keys == null ? null : keys.first();
+    }
+
+    private void rebuildUrlPathIndex(PropertiesFile props) {
+        keysByUrlPath.clear();
+        urlPathIndexValid = true;
+        for (String key : props.stringPropertyNames()) {
+            indexUrlPath(key, props.getProperty(key));
+        }
+        urlPathIndexedEntries = props.size();
+    }
+
+    private void indexUrlPath(String key, String path) {
+        if (!urlPathIndexValid) {
+            return;
+        }
+        String urlPath = getUrlPath(path);
+        if (urlPath != null && getKeyTime(key) >= 0) {
+            NavigableSet<String> keys = keysByUrlPath.get(urlPath);
+            if (keys == null) {
+                keys = new TreeSet<>(NEWEST_KEY_FIRST);
+                keysByUrlPath.put(urlPath, keys);
+            }
+            keys.add(key);
+        }
+        urlPathIndexedEntries = getRecentlyUsedPropertiesFile().size();
+    }
+
+    private void unindexUrlPath(String key, String path) {
+        if (!urlPathIndexValid) {
+            return;
+        }
+        String urlPath = getUrlPath(path);
+        NavigableSet<String> keys = urlPath == null ? null : keysByUrlPath.get(urlPath);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            keysByUrlPath.remove(urlPath);
+        }
+        urlPathIndexedEntries = getRecentlyUsedPropertiesFile().size();
+    }
+
+    /**
+     * @return the time of the key, or -1 if it is not in the format
+     * "milliseconds,folder"
+     */
+    private static long getKeyTime(String key) {
+        try {
+            return Long.parseLong(key.substring(0, key.indexOf(',')));
+        } catch (RuntimeException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * The entries of the recently used file which keep the index of the
+     * paths up to date, for the records of the journal.
+     */
+    private class IndexedEntries extends AbstractMap<Object, Object> {
+
+        private final PropertiesFile props;
+
+        IndexedEntries(PropertiesFile props) {
+            this.props = props;
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            Object old = props.put(key, value);
+            if (old != null) {
+                unindexUrlPath((String) key, (String) old);
+            }
+            indexUrlPath((String) key, (String) value);
+            return old;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            Object old = props.remove(key);
+            if (old != null) {
+                unindexUrlPath((String) key, (String) old);
+            }
+            return old;
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return props.entrySet();
+        }
+    }
+
+    /**
+     * @return the path to file minus the cache directory and indexed folder,
+     * or null if the path is not inside an indexed folder
+     */
+    private String getUrlPath(String path) {
+        if (path == null) {
+            return null;
+        }
+        int len = getCacheDir().getFullPath().length();
+        if (path.length() <= len + 1) {
+            return null;
+        }
+        int index = path.indexOf(File.separatorChar, len + 1);
+        if (index < 0) {
+            return null;
+        }
+        return path.substring(index);
+    }
+
     /**
      * Return a copy of the keys available.
      * 
@@ -354,7 +621,11 @@ public class CacheLRUWrapper {
         return System.currentTimeMillis() + "," + getIdForCacheFolder(path);
     }
 
-    void clearLRUSortedEntries() {
+    synchronized void clearLRUSortedEntries() {
         getRecentlyUsedPropertiesFile().clear();
+        pendingRecords.clear();
+        compactionNeeded = true;
+        keysByUrlPath.clear();
+        urlPathIndexedEntries = 0;
     }
 }
@@ -451,14 +451,90 @@ public class CacheUtil {
         if (!isCacheable(source, version))
             throw new IllegalArgumentException(R("CNotCacheable", source));
 
-        CacheEntry entry = new CacheEntry(source, version); // could pool this
-        boolean result = entry.isCached();
+        // a resource never cached must not get a new cache file by asking
+        boolean result = hasCacheFile(source);
+        if (result) {
+            CacheEntry entry = new CacheEntry(source, version); // could pool this
+            result = entry.isCached();
+        }
 
         LOG.info("isCached: {} = {}", source, result);
 
         return result;
     }
 
+    /**
+     * Stores the package index of a cached jar in its cache entry, unless
+     * the entry already holds the same index.
+     *
+     * @param source  the source URL
+     * @param version the version of the jar
+     * @param index   the encoded package index
+     * @throws IllegalArgumentException if the source is not cacheable
+     */
+    public static void storePackageIndex(URL source, Version version, String index) {
+        if (!isCacheable(source, version))
+            throw new IllegalArgumentException(R("CNotCacheable", source));
+
+        CacheEntry entry = new CacheEntry(source, version);
+        if (index.equals(entry.getPackageIndex())) {
+            return;
+        }
+        entry.lock();
+        try {
+            entry.setPackageIndex(index);
+            entry.store();
+        } finally {
+            entry.unlock();
+        }
+    }
+
+    /**
+     * Stores the trace of the lazy jars used by an application in the cache
+     * entry of its main jar.
+     *
+     * @param source  the source URL of the main jar
+     * @param version the version of the main jar
+     * @param trace   the encoded trace
+     * @throws IllegalArgumentException if the source is not cacheable
+     */
+    public static void storeLazyJarTrace(URL source, Version version, String trace) {
+        if (!isCacheable(source, version))
+            throw new IllegalArgumentException(R("CNotCacheable", source));
+
+        CacheEntry entry = new CacheEntry(source, version);
+        entry.lock();
+        try {
+            entry.setLazyJarTrace(trace);
+            entry.store();
+        } finally {
+            entry.unlock();
+        }
+    }
+
+    /**
+     * Stores what the signature verification of a cached jar found in its
+     * cache entry.
+     *
+     * @param source      the source URL
+     * @param version     the version of the jar
+     * @param verifiedJar the encoded verification
+     * @throws IllegalArgumentException if the source is not cacheable
+     */
+    public static void storeVerifiedJar(URL source, Version version, String verifiedJar) {
+        if (!isCacheable(source, version))
+            throw new IllegalArgumentException(R("CNotCacheable", source));
+
+        CacheEntry entry = new CacheEntry(source, version);
+        entry.lock();
+        try {
+            entry.setVerifiedJar(verifiedJar);
+            entry.store();
+        } finally {
+            entry.unlock();
+        }
+    }
+
     /**
      * Returns whether the resource can be cached as a local file;
      * if not, then URLConnection.openStream can be used to obtain
@@ -519,6 +595,23 @@ public class CacheUtil {
         return cacheFile;
     }
 
+    /**
+     * @param source the source URL
+     * @return whether the cache has a file for the URL, without making one
+     */
+    private static boolean hasCacheFile(URL source) {
+        CacheLRUWrapper lruHandler = CacheLRUWrapper.getInstance();
+        synchronized (lruHandler) {
+            try {
+                lruHandler.lock();
+                lruHandler.load();
+                return lruHandler.getNewestKeyForUrlPath(urlToPath(source, "").getPath()) != null;
+            } finally {
+                lruHandler.unlock();
+            }
+        }
+    }
+
     /**
      * This will return a File pointing to the location of cache item.
      *
@@ -528,32 +621,17 @@ public class CacheUtil {
     private static File getCacheFileIfExist(File urlPath) {
         CacheLRUWrapper lruHandler = CacheLRUWrapper.getInstance();
         synchronized (lruHandler) {
-            File cacheFile = null;
-            List<Entry<String, String>> entries = lruHandler.getLRUSortedEntries();
-            // Start searching from the most recent to least recent.
-            for (Entry<String, String> e : entries) {
-                final String key = e.getKey();
-                final String path = e.getValue();
-
-                if (pathToURLPath(path).equals(urlPath.getPath())) { // Match found.
-                    cacheFile = new File(path);
-                    lruHandler.updateEntry(key);
-                    break; // Stop searching since we got newest one already.
-                }
+            // the index holds the newest entry for the path already
+            String key = lruHandler.getNewestKeyForUrlPath(urlPath.getPath());
+            if (key == null) {
+                return null;
             }
+            File cacheFile = new File(lruHandler.getValue(key));
+            lruHandler.updateEntry(key);
             return cacheFile;
         }
     }
 
-    /**
-     * Get the path to file minus the cache directory and indexed folder.
-     */
-    private static String pathToURLPath(String path) {
-        int len = CacheLRUWrapper.getInstance().getCacheDir().getFullPath().length();
-        int index = path.indexOf(File.separatorChar, len + 1);
-        return path.substring(index);
-    }
-
     /**
      * Returns the parent directory of the cached resource.
      *
@@ -629,8 +707,22 @@ public class CacheUtil {
      * @throws java.io.IOException if IO breaks
      */
     public static OutputStream getOutputStream(URL source, Version version) throws IOException {
+        return getOutputStream(source, version, false);
+    }
+
+    /**
+     * Returns a buffered output stream open for writing to the
+     * cache file for the specified resource.
+     *
+     * @param source  the remote location
+     * @param version the file version to write to
+     * @param append  whether to continue writing at the end of the file
+     * @return the stream to write to resource
+     * @throws java.io.IOException if IO breaks
+     */
+    public static OutputStream getOutputStream(URL source, Version version, boolean append) throws IOException {
         File localFile = getCacheFile(source, version);
-        OutputStream out = new FileOutputStream(localFile);
+        OutputStream out = new FileOutputStream(localFile, append);
 
         return new BufferedOutputStream(out);
     }
@@ -874,7 +966,8 @@ public class CacheUtil {
                     keep.add(file.getPath().substring(rStr.length()));
 
                     for (File f : file.getParentFile().listFiles()) {
-                        if (!(f.equals(file) || f.equals(pf.getStoreFile()))) {
+                        if (!(f.equals(file) || f.equals(pf.getStoreFile()) || ClassDataSharingArchive.isArchiveOf(file, f)
+                                || DescriptorSnapshot.isSnapshotOf(file, f))) {
                             try {
                                 FileUtils.recursiveDelete(f, f);
                             } catch (IOException e1) {
@@ -884,7 +977,8 @@ public class CacheUtil {
 
                     }
                 }
-                lruHandler.store();
+                // good moment to fold the journal of the LRU into its snapshot
+                lruHandler.compact();
             } finally {
                 lruHandler.unlock();
             }
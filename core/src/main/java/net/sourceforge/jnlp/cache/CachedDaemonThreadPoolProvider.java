@@ -83,4 +83,11 @@ public class CachedDaemonThreadPoolProvider {
 
     public static final ExecutorService DAEMON_THREAD_POOL = Executors.newCachedThreadPool(new DaemonThreadFactory());
 
+    /**
+     * Pool for CPU bound work, with one thread per processor. Its tasks must
+     * not wait for other tasks of this pool.
+     */
+    public static final ExecutorService DAEMON_COMPUTATION_THREAD_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory());
+
 }
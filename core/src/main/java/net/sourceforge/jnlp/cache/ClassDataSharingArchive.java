@@ -0,0 +1,198 @@
+package net.sourceforge.jnlp.cache;
+
+import net.sourceforge.jnlp.JARDesc;
+import net.sourceforge.jnlp.JNLPFile;
+import net.sourceforge.jnlp.config.DeploymentConfiguration;
+import net.sourceforge.jnlp.runtime.JNLPRuntime;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class data sharing archive of an application which is started in a new
+ * JVM, see {@link DeploymentConfiguration#KEY_CLASS_DATA_SHARING}.
+ * <p>
+ * The archive is stored in the cache next to the main jar. Its name contains
+ * a fingerprint of the cache entries of the jars - their validators - and of
+ * the JVM, so an archive is only used with the same jars it was recorded
+ * with. On the first run the JVM records the archive when it exits
+ * ({@code -XX:ArchiveClassesAtExit}), later runs map it
+ * ({@code -XX:SharedArchiveFile}).
+ * </p>
+ * <p>
+ * The new JVM is started by the same launcher as the one running this code,
+ * which picks the JVM from the same settings, so the version of the running
+ * JVM is checked. Its home and version are part of the fingerprint too, so
+ * an archive is recorded again once the JVM is updated.
+ * </p>
+ * <p>
+ * Which classes are archived is up to the JVM; classes it can not archive
+ * are loaded as usual. The classes of the JDK and of IcedTea-Web loaded at
+ * startup are archived. Classes of the application are only archived if the
+ * JVM accepts their class loader and code source: classes of signed jars are
+ * always skipped, so for a signed application the archive holds the startup
+ * classes only. {@code -Xlog:cds} of the recording JVM lists what was
+ * skipped.
+ * </p>
+ */
+public class ClassDataSharingArchive {
+
+    private final static Logger LOG = LoggerFactory.getLogger(ClassDataSharingArchive.class);
+
+    static final String SUFFIX = ".jsa";
+
+    /** first release able to record an archive at exit (JEP 350) */
+    static final int DYNAMIC_ARCHIVE_JAVA_VERSION = 13;
+
+    private final File archive;
+    private final String prefix;
+
+    ClassDataSharingArchive(File mainJar, String fingerprint) {
+        this.prefix = mainJar.getName() + "-";
+        this.archive = new File(mainJar.getParentFile(), prefix + fingerprint + SUFFIX);
+    }
+
+    /**
+     * @param file the application
+     * @return the archive of the application, or null if class data sharing
+     * is disabled or not supported, or if the jars of the application are
+     * not cached yet
+     */
+    public static ClassDataSharingArchive forApplication(JNLPFile file) {
+        if (!Boolean.parseBoolean(JNLPRuntime.getConfiguration().getProperty(DeploymentConfiguration.KEY_CLASS_DATA_SHARING))) {
+            return null;
+        }
+        final String specificationVersion = System.getProperty("java.specification.version");
+        if (getJavaVersion(specificationVersion) < DYNAMIC_ARCHIVE_JAVA_VERSION) {
+            LOG.debug("Class data sharing archives need Java {} or later, this is {}", DYNAMIC_ARCHIVE_JAVA_VERSION, specificationVersion);
+            return null;
+        }
+        final JARDesc[] jars = file.getResources().getJARs();
+        JARDesc mainJar = file.getResources().getMainJAR();
+        if (mainJar == null && jars.length > 0) {
+            mainJar = jars[0];
+        }
+        if (mainJar == null || !CacheUtil.isCacheable(mainJar.getLocation(), mainJar.getVersion())) {
+            return null;
+        }
+
+        final List<String> validators = new ArrayList<>();
+        validators.add(System.getProperty("java.home"));
+        validators.add(System.getProperty("java.vm.vendor"));
+        validators.add(System.getProperty("java.vm.version"));
+        for (JARDesc jar : jars) {
+            if (!CacheUtil.isCacheable(jar.getLocation(), jar.getVersion())) {
+                continue;
+            }
+            final CacheEntry entry = new CacheEntry(jar.getLocation(), jar.getVersion());
+            if (!entry.isCached()) {
+                if (jar.isLazy()) {
+                    // not used yet, the archive is recorded again once it is
+                    continue;
+                }
+                LOG.debug("No class data sharing archive, {} is not cached yet", jar.getLocation());
+                return null;
+            }
+            validators.add(jar.getLocation() + " " + jar.getVersion() + " " + entry.getLastModified()
+                    + " " + entry.getETag() + " " + entry.getRemoteContentLength());
+        }
+
+        final File mainJarFile = CacheUtil.getCacheFile(mainJar.getLocation(), mainJar.getVersion());
+        if (mainJarFile == null) {
+            return null;
+        }
+        return new ClassDataSharingArchive(mainJarFile, getFingerprint(validators));
+    }
+
+    public File getFile() {
+        return archive;
+    }
+
+    /**
+     * Returns the arguments of the JVM which uses the archive if it was
+     * already recorded, or records it otherwise. Archives recorded for other
+     * versions of the jars are removed before a new one is recorded.
+     *
+     * @return arguments for the new JVM
+     */
+    public List<String> getVMArgs() {
+        if (archive.isFile()) {
+            LOG.info("Using class data sharing archive {}", archive);
+            return Collections.singletonList("-XX:SharedArchiveFile=" + archive.getPath());
+        }
+        removeStaleArchives();
+        LOG.info("Recording class data sharing archive {}", archive);
+        return Collections.singletonList("-XX:ArchiveClassesAtExit=" + archive.getPath());
+    }
+
+    /**
+     * @param jar a cached jar
+     * @param file a file next to it
+     * @return whether the file is a class data sharing archive of the jar
+     */
+    static boolean isArchiveOf(File jar, File file) {
+        return file.getName().startsWith(jar.getName() + "-") && file.getName().endsWith(SUFFIX);
+    }
+
+    private void removeStaleArchives() {
+        final File[] stale = archive.getParentFile().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && name.endsWith(SUFFIX);
+            }
+        });
+        if (stale == null) {
+            return;
+        }
+        for (File f : stale) {
+            if (!f.delete()) {
+                LOG.debug("Unable to delete stale class data sharing archive {}", f);
+            }
+        }
+    }
+
+    static String getFingerprint(List<String> validators) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String validator : validators) {
+                md.update(String.valueOf(validator).getBytes(StandardCharsets.UTF_8));
+                md.update((byte) '\n');
+            }
+            final byte[] sum = md.digest();
+            // half of the digest is plenty to tell the versions of the jars apart
+            return FileUtils.toHexString(Arrays.copyOf(sum, sum.length / 2));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @param specificationVersion value of java.specification.version
+     * @return the feature release, e.g. 8 for 1.8 or 13 for 13
+     */
+    static int getJavaVersion(String specificationVersion) {
+        if (specificationVersion == null) {
+            return 0;
+        }
+        String version = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+        int dot = version.indexOf('.');
+        if (dot >= 0) {
+            version = version.substring(0, dot);
+        }
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package net.sourceforge.jnlp.cache;
+
+import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
+import net.adoptopenjdk.icedteaweb.xmlparser.Node;
+import net.adoptopenjdk.icedteaweb.xmlparser.ParseException;
+import net.sourceforge.jnlp.Parser;
+import net.sourceforge.jnlp.ParserSettings;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Snapshot of the parsed xml of a cached descriptor, stored next to it.
+ * <p>
+ * The snapshot holds the tree of {@link Node}s together with the SHA-256
+ * digest of the descriptor and whether malformed xml was allowed, the only
+ * setting the tree depends on. While both match, the tree is read from the
+ * snapshot instead of parsing the xml again. The {@link Parser} still builds
+ * the descriptor from the tree, with the settings of the caller.
+ * </p>
+ */
+public class DescriptorSnapshot {
+
+    private final static Logger LOG = LoggerFactory.getLogger(DescriptorSnapshot.class);
+
+    static final String SUFFIX = ".node";
+
+    /** changes whenever the format of the snapshot does */
+    private static final int FORMAT = 1;
+
+    private DescriptorSnapshot() {
+    }
+
+    /**
+     * @param descriptor a cached descriptor
+     * @param settings the settings to parse the descriptor with
+     * @return the root node of the descriptor
+     * @throws IOException if the descriptor can not be read
+     * @throws ParseException if the descriptor is invalid
+     */
+    public static Node getRootNode(File descriptor, ParserSettings settings) throws IOException, ParseException {
+        final byte[] content = Files.readAllBytes(descriptor.toPath());
+        final String digest = getDigest(content);
+        final File snapshot = getSnapshotFile(descriptor);
+
+        if (snapshot.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+                if (in.readInt() == FORMAT && in.readUTF().equals(digest) && in.readBoolean() == settings.isMalformedXmlAllowed()) {
+                    LOG.debug("Using parsed snapshot of {}", descriptor);
+                    return Node.read(in);
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOG.debug("Unable to read snapshot {}: {}", snapshot, ex.toString());
+            }
+        }
+
+        final Node root = Parser.getRootNode(new ByteArrayInputStream(content), settings);
+        try {
+            write(snapshot, digest, settings, root);
+        } catch (IOException ex) {
+            // the descriptor is parsed again next time
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+        }
+        return root;
+    }
+
+    /**
+     * @param descriptor a cached descriptor
+     * @param file a file next to it
+     * @return whether the file is the snapshot of the descriptor
+     */
+    static boolean isSnapshotOf(File descriptor, File file) {
+        return file.getName().equals(descriptor.getName() + SUFFIX);
+    }
+
+    static File getSnapshotFile(File descriptor) {
+        return new File(descriptor.getParentFile(), descriptor.getName() + SUFFIX);
+    }
+
+    private static void write(File snapshot, String digest, ParserSettings settings, Node root) throws IOException {
+        final File tmp = File.createTempFile(snapshot.getName(), ".tmp", snapshot.getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(FORMAT);
+                out.writeUTF(digest);
+                out.writeBoolean(settings.isMalformedXmlAllowed());
+                root.write(out);
+            }
+            Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static String getDigest(byte[] content) {
+        try {
+            return FileUtils.toHexString(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package net.sourceforge.jnlp.cache;
+
+/**
+ * Order in which the {@link DownloadScheduler} starts downloads of resources.
+ * Constants are declared from the most urgent one.
+ */
+public enum DownloadPriority {
+
+    /** explicitly requested by the application, eg via {@code DownloadService.loadPart} */
+    BOOSTED,
+
+    /** somebody is blocked until the resource is downloaded */
+    WAITED,
+
+    /** main jar, eager jars and any resource without special needs */
+    NORMAL,
+
+    /** lazy jars and other resources downloaded only in advance */
+    PREFETCH;
+
+    /**
+     * @param other priority to compare to
+     * @return whether this priority is more urgent than the other one
+     */
+    public boolean isHigherThan(DownloadPriority other) {
+        return ordinal() < other.ordinal();
+    }
+}
@@ -0,0 +1,184 @@
+package net.sourceforge.jnlp.cache;
+
+import net.sourceforge.jnlp.config.DeploymentConfiguration;
+import net.sourceforge.jnlp.runtime.JNLPRuntime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs downloads of resources with bounded concurrency. At most
+ * {@link DeploymentConfiguration#KEY_DOWNLOAD_MAX_CONCURRENT} downloads are
+ * running at once, and at most
+ * {@link DeploymentConfiguration#KEY_DOWNLOAD_MAX_PER_HOST} of them against a
+ * single host. Waiting downloads are started in order of the
+ * {@link DownloadPriority} of their resource at the time a slot frees up, so
+ * boosting a resource already in queue moves it forward. Downloads of the same
+ * priority are started in order in which they were scheduled.
+ */
+class DownloadScheduler {
+
+    private final static Logger LOG = LoggerFactory.getLogger(DownloadScheduler.class);
+
+    private static final int DEFAULT_MAX_CONCURRENT = 8;
+    private static final int DEFAULT_MAX_PER_HOST = 4;
+
+    private static class DownloadSchedulerHolder {
+
+        private static final DownloadScheduler INSTANCE = new DownloadScheduler(
+                getIntProperty(DeploymentConfiguration.KEY_DOWNLOAD_MAX_CONCURRENT, DEFAULT_MAX_CONCURRENT),
+                getIntProperty(DeploymentConfiguration.KEY_DOWNLOAD_MAX_PER_HOST, DEFAULT_MAX_PER_HOST),
+                CachedDaemonThreadPoolProvider.DAEMON_THREAD_POOL);
+    }
+
+    static DownloadScheduler getInstance() {
+        return DownloadSchedulerHolder.INSTANCE;
+    }
+
+    /** download waiting for a free slot */
+    private static class Task {
+
+        private final Resource resource;
+        private final Runnable download;
+        private final String host;
+        private final long order;
+
+        Task(Resource resource, Runnable download, long order) {
+            this.resource = resource;
+            this.download = download;
+            this.host = getHost(resource.getLocation());
+            this.order = order;
+        }
+
+        boolean isBefore(Task other) {
+            final DownloadPriority priority = resource.getPriority();
+            final DownloadPriority otherPriority = other.resource.getPriority();
+            if (priority != otherPriority) {
+                return priority.isHigherThan(otherPriority);
+            }
+            return order < other.order;
+        }
+    }
+
+    private final int maxConcurrent;
+    private final int maxPerHost;
+    private final Executor executor;
+
+    private final List<Task> queue = new ArrayList<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private int running = 0;
+    private long scheduled = 0;
+
+    DownloadScheduler(int maxConcurrent, int maxPerHost, Executor executor) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.executor = executor;
+    }
+
+    /**
+     * Queues the download of a resource and starts it as soon as its priority
+     * and the limits allow.
+     *
+     * @param resource resource to be downloaded
+     * @param download the download itself
+     */
+    void schedule(Resource resource, Runnable download) {
+        synchronized (this) {
+            queue.add(new Task(resource, download, scheduled++));
+            LOG.debug("Scheduled download of {} with priority {}, {} waiting, {} running", resource.getLocation(), resource.getPriority(), queue.size(), running);
+        }
+        dispatch();
+    }
+
+    /**
+     * Starts waiting downloads while there are free slots.
+     */
+    void dispatch() {
+        final List<Task> toStart = new ArrayList<>();
+        synchronized (this) {
+            while (running < maxConcurrent) {
+                final Task next = pollNext();
+                if (next == null) {
+                    break;
+                }
+                running++;
+                runningPerHost.put(next.host, getRunning(next.host) + 1);
+                toStart.add(next);
+            }
+        }
+        for (final Task task : toStart) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.download.run();
+                    } finally {
+                        finished(task);
+                    }
+                }
+            });
+        }
+    }
+
+    synchronized int getRunning() {
+        return running;
+    }
+
+    synchronized int getWaiting() {
+        return queue.size();
+    }
+
+    private void finished(Task task) {
+        synchronized (this) {
+            running--;
+            final int left = getRunning(task.host) - 1;
+            if (left > 0) {
+                runningPerHost.put(task.host, left);
+            } else {
+                runningPerHost.remove(task.host);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Removes from queue the most urgent download whose host is not busy.
+     * Calls to this method should be synchronized on this.
+     */
+    private Task pollNext() {
+        Task best = null;
+        for (final Task task : queue) {
+            if (getRunning(task.host) < maxPerHost && (best == null || task.isBefore(best))) {
+                best = task;
+            }
+        }
+        if (best != null) {
+            queue.remove(best);
+        }
+        return best;
+    }
+
+    private int getRunning(String host) {
+        final Integer count = runningPerHost.get(host);
+        return count == null ? 0 : count;
+    }
+
+    private static String getHost(URL location) {
+        return location.getProtocol() + "://" + location.getHost() + ":" + location.getPort();
+    }
+
+    private static int getIntProperty(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(JNLPRuntime.getConfiguration().getProperty(key));
+        } catch (Exception ex) {
+            LOG.debug("Using default {} for {}", defaultValue, key);
+            return defaultValue;
+        }
+    }
+}
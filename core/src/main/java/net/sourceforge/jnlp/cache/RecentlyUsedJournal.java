@@ -0,0 +1,201 @@
+package net.sourceforge.jnlp.cache;
+
+import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of the changes to the recently_used file.
+ * <p>
+ * Instead of rewriting the whole recently_used file on each change of the
+ * LRU, the changes are appended here as records and the recently_used file
+ * only serves as snapshot, which is rewritten when the journal is compacted.
+ * The current state is the snapshot with all records of the journal replayed
+ * on top of it.
+ * </p>
+ * <p>
+ * Each record is one line: {@code +<tab>key<tab>path} puts an entry,
+ * {@code -<tab>key} removes one. Both are idempotent, so if a compaction
+ * breaks after the snapshot was stored, replaying the old journal again does
+ * not change the result. A line which was not completed (the writing process
+ * died) is never replayed.
+ * </p>
+ */
+public class RecentlyUsedJournal {
+
+    private final static Logger LOG = LoggerFactory.getLogger(RecentlyUsedJournal.class);
+
+    static final String SUFFIX = ".journal";
+
+    private static final char PUT = '+';
+    private static final char REMOVE = '-';
+    private static final char SEPARATOR = '\t';
+    private static final char END = '\n';
+
+    private final File file;
+
+    /**
+     * @param recentlyUsed the snapshot file, the journal is stored next to it
+     */
+    public RecentlyUsedJournal(File recentlyUsed) {
+        this.file = new File(recentlyUsed.getPath() + SUFFIX);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return length of the journal in bytes
+     */
+    public long length() {
+        return file.length();
+    }
+
+    /**
+     * @return record putting the entry, or null if the entry can not be
+     * written as a record
+     */
+    static String put(String key, String path) {
+        if (!isEncodable(key) || !isEncodable(path)) {
+            return null;
+        }
+        return PUT + "" + SEPARATOR + key + SEPARATOR + path;
+    }
+
+    /**
+     * @return record removing the entry, or null if the key can not be
+     * written as a record
+     */
+    static String remove(String key) {
+        if (!isEncodable(key)) {
+            return null;
+        }
+        return REMOVE + "" + SEPARATOR + key;
+    }
+
+    private static boolean isEncodable(String s) {
+        return s != null && s.indexOf(SEPARATOR) < 0 && s.indexOf(END) < 0 && s.indexOf('\r') < 0;
+    }
+
+    /**
+     * Appends the records to the journal and forces them to the disk.
+     * Callers must hold the lock of the recently_used file.
+     *
+     * @param records records to append
+     * @return true if the records were written
+     */
+    public boolean append(List<String> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (String record : records) {
+            byte[] bytes = (record + END).getBytes(StandardCharsets.UTF_8);
+            buffer.write(bytes, 0, bytes.length);
+        }
+        try {
+            if (!file.exists()) {
+                FileUtils.createRestrictedFile(file, true);
+            } else {
+                // do not glue the first record to a torn one
+                dropTornRecord();
+            }
+        } catch (IOException ex) {
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+            return false;
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            buffer.writeTo(out);
+            out.getChannel().force(true);
+            return true;
+        } catch (IOException ex) {
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+            return false;
+        }
+    }
+
+    private void dropTornRecord() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long end = raf.length();
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == END) {
+                    break;
+                }
+                end--;
+            }
+            if (end != raf.length()) {
+                raf.setLength(end);
+            }
+        }
+    }
+
+    /**
+     * Applies the complete records stored from the given offset on.
+     * Malformed records are skipped.
+     *
+     * @param entries the entries to apply the records to
+     * @param offset position in the journal to start from
+     * @return position after the last complete record
+     */
+    public long replay(Map<Object, Object> entries, long offset) {
+        if (!file.exists() || file.length() <= offset) {
+            return offset;
+        }
+        byte[] tail;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            tail = new byte[(int) (raf.length() - offset)];
+            raf.seek(offset);
+            raf.readFully(tail);
+        } catch (IOException ex) {
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+            return offset;
+        }
+        int start = 0;
+        for (int i = 0; i < tail.length; i++) {
+            if (tail[i] == END) {
+                apply(entries, new String(tail, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return offset + start;
+    }
+
+    static void apply(Map<Object, Object> entries, String record) {
+        if (record.length() < 2 || record.charAt(1) != SEPARATOR) {
+            return;
+        }
+        String[] parts = record.substring(2).split(String.valueOf(SEPARATOR), -1);
+        if (record.charAt(0) == PUT && parts.length == 2) {
+            entries.put(parts[0], parts[1]);
+        } else if (record.charAt(0) == REMOVE && parts.length == 1) {
+            entries.remove(parts[0]);
+        }
+    }
+
+    /**
+     * Drops all records, to be called once they are part of the snapshot.
+     * Callers must hold the lock of the recently_used file.
+     */
+    public void truncate() {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.getChannel().force(true);
+        } catch (IOException ex) {
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+        }
+    }
+}
@@ -26,8 +26,10 @@ import java.io.File;
 import java.net.URL;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <p>
@@ -94,6 +96,9 @@ public class Resource {
 
     /** the status of the resource */
     private final EnumSet<Status> status = EnumSet.noneOf(Status.class);
+
+    /** completed once the resource is downloaded or failed; guarded by status */
+    private CompletableFuture<Resource> downloadedFuture = new CompletableFuture<>();
     
     /** Update policy for this resource */
     private final UpdatePolicy updatePolicy;
@@ -101,6 +106,9 @@ public class Resource {
     /** Download options for this resource */
     private DownloadOptions downloadOptions;
 
+    /** how urgent the download of this resource is */
+    private volatile DownloadPriority priority = DownloadPriority.NORMAL;
+
     /**
      * Create a resource.
      */
@@ -141,6 +149,24 @@ public class Resource {
         }
     }
 
+    /**
+     * Returns the local files of all resources still referenced in this JVM,
+     * which includes all resources of the trackers of live class loaders.
+     * @return set of the local files
+     */
+    static Set<File> getLocalFilesInUse() {
+        Set<File> files = new HashSet<>();
+        synchronized (resources) {
+            for (Resource resource : resources.hardList()) {
+                File localFile = resource.getLocalFile();
+                if (localFile != null) {
+                    files.add(localFile);
+                }
+            }
+        }
+        return files;
+    }
+
     /**
      * Returns the remote location of the resource.
      * @return the same location as the one with which this resource was created
@@ -329,6 +355,7 @@ public class Resource {
                 status.addAll(add);
             }
         }
+        completeDownloadedFuture();
     }
 
     /**
@@ -339,6 +366,7 @@ public class Resource {
         synchronized (status) {
             status.add(flag);
         }
+        completeDownloadedFuture();
     }
 
     /**
@@ -349,6 +377,7 @@ public class Resource {
         synchronized (status) {
             status.addAll(flags);
         }
+        completeDownloadedFuture();
     }
 
     /**
@@ -367,6 +396,40 @@ public class Resource {
     public void resetStatus() {
         synchronized (status) {
             status.clear();
+            // the resource will be processed again
+            if (downloadedFuture.isDone()) {
+                downloadedFuture = new CompletableFuture<>();
+            }
+        }
+    }
+
+    /**
+     * Returns a future completed once the resource is downloaded or failed
+     * (has {@link Status#DOWNLOADED} or {@link Status#ERROR} set). Callers
+     * must not complete it themselves.
+     * @return the future completed with this resource
+     */
+    public CompletableFuture<Resource> getDownloadedFuture() {
+        synchronized (status) {
+            return downloadedFuture;
+        }
+    }
+
+    /**
+     * Completes the future of the download once the status has
+     * {@link Status#DOWNLOADED} or {@link Status#ERROR} set. Completion
+     * happens outside of the status lock, so the waiters can query the
+     * resource right away.
+     */
+    private void completeDownloadedFuture() {
+        final CompletableFuture<Resource> downloaded;
+        final boolean isDownloaded;
+        synchronized (status) {
+            isDownloaded = status.contains(Status.DOWNLOADED) || status.contains(Status.ERROR);
+            downloaded = downloadedFuture;
+        }
+        if (isDownloaded) {
+            downloaded.complete(this);
         }
     }
 
@@ -433,6 +496,32 @@ public class Resource {
         return this.downloadOptions;
     }
 
+    /**
+     * @return how urgent the download of this resource is
+     */
+    public DownloadPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets how urgent the download of this resource is.
+     * @param priority the new priority
+     */
+    public void setPriority(DownloadPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Makes the download of this resource more urgent. Never lowers the
+     * current priority.
+     * @param priority the requested priority
+     */
+    public synchronized void raisePriority(DownloadPriority priority) {
+        if (priority.isHigherThan(this.priority)) {
+            this.priority = priority;
+        }
+    }
+
     public boolean isConnectable() {
         return JNLPRuntime.isConnectable(this.location);
     }
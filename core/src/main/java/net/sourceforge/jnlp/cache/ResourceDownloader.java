@@ -6,6 +6,7 @@ import net.adoptopenjdk.icedteaweb.http.HttpUtils;
 import net.adoptopenjdk.icedteaweb.option.OptionsDefinitions;
 import net.sourceforge.jnlp.DownloadOptions;
 import net.sourceforge.jnlp.Version;
+import net.sourceforge.jnlp.config.DeploymentConfiguration;
 import net.sourceforge.jnlp.runtime.Boot;
 import net.sourceforge.jnlp.runtime.JNLPRuntime;
 import net.sourceforge.jnlp.security.ConnectionFactory;
@@ -19,18 +20,26 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Pack200;
 import java.util.zip.GZIPInputStream;
@@ -49,12 +58,21 @@ public class ResourceDownloader implements Runnable {
 
     private static final HttpMethod[] validRequestMethods = {HttpMethod.HEAD, HttpMethod.GET};
 
+    private static final int DEFAULT_PROBES_PER_HOST = 4;
+
+    /**
+     * limits concurrent url probes per protocol, host and port, a host is only
+     * kept while some probe of it is waiting or running
+     */
+    private static final Map<String, HostProbes> probesPerHost = new HashMap<>();
+
     private final Resource resource;
-    private final Object lock;
 
-    public ResourceDownloader(Resource resource, Object lock) {
+    /** GET connection opened while connecting, whose body was not read yet */
+    private URLConnection pendingConnection;
+
+    public ResourceDownloader(Resource resource) {
         this.resource = resource;
-        this.lock = lock;
     }
 
     static int getUrlResponseCode(final URL url, final Map<String, String> requestProperties, final HttpMethod requestMethod) throws IOException {
@@ -107,6 +125,7 @@ public class ResourceDownloader implements Runnable {
 
         result.lastModified = connection.getLastModified();
         result.length = connection.getContentLengthLong();
+        result.etag = connection.getHeaderField("ETag");
 
         return result;
 
@@ -114,15 +133,23 @@ public class ResourceDownloader implements Runnable {
 
     @Override
     public void run() {
-        if (resource.isSet(PRECONNECT) && !resource.hasFlags(EnumSet.of(ERROR, CONNECTING, CONNECTED))) {
-            resource.changeStatus(EnumSet.noneOf(Resource.Status.class), EnumSet.of(CONNECTING));
-            resource.fireDownloadEvent(); // fire CONNECTING
-            initializeResource();
-        }
-        if (resource.isSet(PREDOWNLOAD) && !resource.hasFlags(EnumSet.of(ERROR, DOWNLOADING, DOWNLOADED))) {
-            resource.changeStatus(EnumSet.noneOf(Resource.Status.class), EnumSet.of(DOWNLOADING));
-            resource.fireDownloadEvent(); // fire CONNECTING
-            downloadResource();
+        try {
+            if (resource.isSet(PRECONNECT) && !resource.hasFlags(EnumSet.of(ERROR, CONNECTING, CONNECTED))) {
+                resource.changeStatus(EnumSet.noneOf(Resource.Status.class), EnumSet.of(CONNECTING));
+                resource.fireDownloadEvent(); // fire CONNECTING
+                initializeResource();
+            }
+            if (resource.isSet(PREDOWNLOAD) && !resource.hasFlags(EnumSet.of(ERROR, DOWNLOADING, DOWNLOADED))) {
+                resource.changeStatus(EnumSet.noneOf(Resource.Status.class), EnumSet.of(DOWNLOADING));
+                resource.fireDownloadEvent(); // fire CONNECTING
+                downloadResource();
+            }
+        } finally {
+            // resource was current or failed, the body of the probe is not needed
+            if (pendingConnection != null) {
+                ConnectionFactory.getConnectionFactory().disconnect(pendingConnection);
+                pendingConnection = null;
+            }
         }
     }
 
@@ -136,7 +163,13 @@ public class ResourceDownloader implements Runnable {
 
     private void initializeOnlineResource() {
         try {
-            final UrlRequestResult finalLocation = findBestUrl(resource);
+            UrlRequestResult finalLocation = null;
+            if (isSingleRequestDownload()) {
+                finalLocation = openDownloadConnection(resource);
+            }
+            if (finalLocation == null) {
+                finalLocation = findBestUrl(resource);
+            }
             if (finalLocation != null) {
                 initializeFromURL(finalLocation);
             } else {
@@ -145,9 +178,6 @@ public class ResourceDownloader implements Runnable {
         } catch (Exception e) {
             LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, e);
             resource.changeStatus(EnumSet.noneOf(Resource.Status.class), EnumSet.of(ERROR));
-            synchronized (lock) {
-                lock.notifyAll(); // wake up wait's to check for completion
-            }
             resource.fireDownloadEvent(); // fire ERROR
         }
     }
@@ -169,7 +199,21 @@ public class ResourceDownloader implements Runnable {
             if (lm == null) {
                 lm = connection.getLastModified();
             }
-            boolean current = CacheUtil.isCurrent(resource.getLocation(), resource.getRequestVersion(), lm) && resource.getUpdatePolicy() != UpdatePolicy.FORCE;
+            boolean current;
+            if (location.isNotModified()) {
+                // server confirmed our validators, nothing was transferred
+                LOG.debug("Resource {} was not modified since last download", resource.getLocation());
+                current = isComplete(entry) && resource.getUpdatePolicy() != UpdatePolicy.FORCE;
+                if (current) {
+                    size = localFile.length();
+                } else if (pendingConnection != null) {
+                    // the answer has no body, the resource is requested again
+                    ConnectionFactory.getConnectionFactory().disconnect(pendingConnection);
+                    pendingConnection = null;
+                }
+            } else {
+                current = isComplete(entry) && CacheUtil.isCurrent(resource.getLocation(), resource.getRequestVersion(), lm) && resource.getUpdatePolicy() != UpdatePolicy.FORCE;
+            }
             if (!current) {
                 if (entry.isCached()) {
                     entry.markForDelete();
@@ -199,6 +243,7 @@ public class ResourceDownloader implements Runnable {
             if (!current) {
                 entry.setRemoteContentLength(size);
                 entry.setLastModified(lm);
+                entry.setETag(location.etag);
             }
             entry.setLastUpdated(System.currentTimeMillis());
             try { 
@@ -229,9 +274,6 @@ public class ResourceDownloader implements Runnable {
             }
             entry.store();
 
-            synchronized (lock) {
-                lock.notifyAll(); // wake up wait's to check for completion
-            }
             resource.fireDownloadEvent(); // fire CONNECTED
 
             // explicitly close the URLConnection.
@@ -261,9 +303,6 @@ public class ResourceDownloader implements Runnable {
                 resource.changeStatus(EnumSet.noneOf(Resource.Status.class), EnumSet.of(ERROR));
             }
 
-            synchronized (lock) {
-                lock.notifyAll(); // wake up wait's to check for completion
-            }
             resource.fireDownloadEvent(); // fire CONNECTED or ERROR
 
         } finally {
@@ -272,6 +311,70 @@ public class ResourceDownloader implements Runnable {
 
     }
 
+    /**
+     * Opens a GET connection to the first candidate url of the resource which
+     * answers with a success code. The connection is kept open, so its body
+     * can be streamed into the cache without sending a second request.
+     *
+     * Anything unusual (redirects to other protocols, 511, errors of all
+     * candidates) is left to {@link #findBestUrl(Resource)}, which is then used
+     * as a fallback.
+     *
+     * @param resource the resource
+     * @return the url with open connection in {@link #pendingConnection}, or
+     * null if the fallback should be used
+     */
+    private UrlRequestResult openDownloadConnection(final Resource resource) {
+        DownloadOptions options = resource.getDownloadOptions();
+        if (options == null) {
+            options = new DownloadOptions(false, false);
+        }
+
+        final List<URL> urls = new ResourceUrlCreator(resource, options).getUrls();
+        LOG.debug("Connecting by single request for: {} : {}", resource.getLocation(), urls);
+        for (final URL url : urls) {
+            URLConnection connection = null;
+            try {
+                connection = ConnectionFactory.getConnectionFactory().openConnection(url);
+                for (final Map.Entry<String, String> property : createProbeRequestProperties(resource).entrySet()) {
+                    connection.addRequestProperty(property.getKey(), property.getValue());
+                }
+                final UrlRequestResult response = new UrlRequestResult(url);
+                if (connection instanceof HttpURLConnection) {
+                    final HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                    httpConnection.setRequestMethod(HttpMethod.GET.name());
+                    response.result = httpConnection.getResponseCode();
+                } else {
+                    connection.connect();
+                }
+                if (response.result == 511 || response.shouldRedirect()) {
+                    LOG.debug("Resource {} got {} for {}, falling back to separate probing", resource.toString(), response.result, url.toExternalForm());
+                    ConnectionFactory.getConnectionFactory().disconnect(connection);
+                    return null;
+                }
+                if (response.isInvalid() && !response.isNotModified()) {
+                    LOG.debug("For {} the server returned {} code for single GET request for {}", resource.toString(), response.result, url.toExternalForm());
+                    ConnectionFactory.getConnectionFactory().disconnect(connection);
+                    continue;
+                }
+                response.lastModified = connection.getLastModified();
+                response.length = connection.getContentLengthLong();
+                response.etag = connection.getHeaderField("ETag");
+                LOG.debug("best url for {} is {} by single GET request", resource.toString(), url.toString());
+                pendingConnection = connection;
+                return response;
+            } catch (IOException e) {
+                LOG.debug("While connecting " + url.toString() + " for resource " + resource.toString() + " got " + e, e);
+                ConnectionFactory.getConnectionFactory().disconnect(connection);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSingleRequestDownload() {
+        return Boolean.valueOf(JNLPRuntime.getConfiguration().getProperty(DeploymentConfiguration.KEY_SINGLE_REQUEST_DOWNLOAD));
+    }
+
     /**
      * Returns the 'best' valid URL for the given resource. This first adjusts
      * the file name to take into account file versioning and packing, if
@@ -289,55 +392,233 @@ public class ResourceDownloader implements Runnable {
         List<URL> urls = new ResourceUrlCreator(resource, options).getUrls();
         LOG.debug("Finding best URL for: {} : {}", resource.getLocation(), options.toString());
         LOG.debug("All possible urls for {} : {}", resource.toString(), urls);
+        final boolean parallel = isParallelProbing() && urls.size() > 1;
         for (final HttpMethod requestMethod : validRequestMethods) {
-            for (int i = 0; i < urls.size(); i++) {
-                URL url = urls.get(i);
-                try {
-                    Map<String, String> requestProperties = new HashMap<>();
-                    requestProperties.put("Accept-Encoding", "pack200-gzip, gzip");
+            // in parallel mode all candidates are requested at once, but the answers are still
+            // evaluated in the order of the list, so the priority of the urls is kept
+            final Map<URL, Future<UrlRequestResult>> probes = parallel ? startProbes(urls, createProbeRequestProperties(resource), requestMethod) : new HashMap<URL, Future<UrlRequestResult>>();
+            try {
+                final UrlRequestResult best = findBestUrlByMethod(resource, urls, requestMethod, probes);
+                if (best != null) {
+                    return best;
+                }
+            } finally {
+                // losers are not needed any more
+                for (final Future<UrlRequestResult> probe : probes.values()) {
+                    probe.cancel(true);
+                }
+            }
+        }
 
-                    UrlRequestResult response = getUrlResponseCodeWithRedirectonResult(url, requestProperties, requestMethod);
-                    if (response.result == 511) {
-                        if (!InetSecurity511Panel.isSkip()) {
+        /* No valid URL, return null */
+        return null;
+    }
 
-                            boolean result511 = SecurityDialogs.show511Dialogue(resource);
-                            if (!result511) {
-                                throw new RuntimeException("Terminated on users request after encauntering 'http 511 authentication'.");
-                            }
-                            //try again, what to do with original resource was nowhere specified
-                            i--;
-                            continue;
+    private UrlRequestResult findBestUrlByMethod(final Resource resource, final List<URL> urls, final HttpMethod requestMethod, final Map<URL, Future<UrlRequestResult>> probes) {
+        for (int i = 0; i < urls.size(); i++) {
+            URL url = urls.get(i);
+            try {
+                final Future<UrlRequestResult> probe = probes.remove(url);
+                UrlRequestResult response = probe != null ? getProbeResult(probe) : getUrlResponseCodeWithRedirectonResult(url, createProbeRequestProperties(resource), requestMethod);
+                if (response.result == 511) {
+                    if (!InetSecurity511Panel.isSkip()) {
+
+                        boolean result511 = SecurityDialogs.show511Dialogue(resource);
+                        if (!result511) {
+                            throw new RuntimeException("Terminated on users request after encauntering 'http 511 authentication'.");
                         }
+                        //try again, what to do with original resource was nowhere specified
+                        i--;
+                        continue;
                     }
-                    if (response.shouldRedirect()) {
-                        if (response.URL == null) {
-                            LOG.debug("Although {} got redirect {} code for {} request for {} the target was null. Not following", resource.toString(), response.result, requestMethod, url.toExternalForm());
-                        } else {
-                            LOG.debug("Resource {} got redirect {} code for {} request for {} adding {} to list of possible urls", resource.toString(), response.result, requestMethod, url.toExternalForm(), response.URL.toExternalForm());
-                            if (!JNLPRuntime.isAllowRedirect()) {
-                                throw new RedirectionException("The resource " + url.toExternalForm() + " is being redirected (" + response.result + ") to " + response.URL.toExternalForm() + ". This is disabled by default. If you wont to allow it, run javaws with -allowredirect parameter.");
-                            }
-                            urls.add(response.URL);
-                        }
-                    } else if (response.isInvalid()) {
-                        LOG.debug("For {} the server returned {} code for {} request for {}", resource.toString(), response.result, requestMethod, url.toExternalForm());
+                }
+                if (response.shouldRedirect()) {
+                    if (response.URL == null) {
+                        LOG.debug("Although {} got redirect {} code for {} request for {} the target was null. Not following", resource.toString(), response.result, requestMethod, url.toExternalForm());
                     } else {
-                        LOG.debug("best url for {} is {} by {}", resource.toString(), url.toString(), requestMethod);
-                        if (response.URL == null) {
-                            response.URL = url;
+                        LOG.debug("Resource {} got redirect {} code for {} request for {} adding {} to list of possible urls", resource.toString(), response.result, requestMethod, url.toExternalForm(), response.URL.toExternalForm());
+                        if (!JNLPRuntime.isAllowRedirect()) {
+                            throw new RedirectionException("The resource " + url.toExternalForm() + " is being redirected (" + response.result + ") to " + response.URL.toExternalForm() + ". This is disabled by default. If you wont to allow it, run javaws with -allowredirect parameter.");
                         }
-                        return response; /* This is the best URL */
+                        urls.add(response.URL);
+                    }
+                } else if (response.isNotModified()) {
+                    LOG.debug("best url for {} is {} by {}, not modified", resource.toString(), url.toString(), requestMethod);
+                    response.URL = url;
+                    return response; /* The cached copy is current */
+                } else if (response.isInvalid()) {
+                    LOG.debug("For {} the server returned {} code for {} request for {}", resource.toString(), response.result, requestMethod, url.toExternalForm());
+                } else {
+                    LOG.debug("best url for {} is {} by {}", resource.toString(), url.toString(), requestMethod);
+                    if (response.URL == null) {
+                        response.URL = url;
+                    }
+                    return response; /* This is the best URL */
+
+                }
+            } catch (IOException e) {
+                // continue to next candidate
+                LOG.error("While processing " + url.toString() + " by " + requestMethod + " for resource " + resource.toString() + " got " + e + ": ", e);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isParallelProbing() {
+        return Boolean.valueOf(JNLPRuntime.getConfiguration().getProperty(DeploymentConfiguration.KEY_PARALLEL_URL_PROBING));
+    }
+
+    /**
+     * Creates headers of a request locating the resource. If there is a cached
+     * copy of the resource, its validators are sent, so the server can answer
+     * by 304 (not modified) without sending any body.
+     *
+     * @param resource the resource
+     * @return request headers
+     */
+    private static Map<String, String> createProbeRequestProperties(final Resource resource) {
+        final Map<String, String> requestProperties = new HashMap<>();
+        requestProperties.put("Accept-Encoding", "pack200-gzip, gzip");
+        if (resource.getUpdatePolicy() != UpdatePolicy.FORCE && CacheUtil.isCacheable(resource.getLocation(), resource.getRequestVersion())) {
+            final CacheEntry entry = new CacheEntry(resource.getLocation(), resource.getRequestVersion());
+            if (isComplete(entry)) {
+                final String etag = entry.getETag();
+                if (etag != null) {
+                    requestProperties.put("If-None-Match", etag);
+                }
+                final long lastModified = entry.getLastModified();
+                if (lastModified > 0) {
+                    requestProperties.put("If-Modified-Since", formatHttpDate(lastModified));
+                }
+            }
+        }
+        return requestProperties;
+    }
+
+    /**
+     * A file whose download was interrupted counts as cached if the server did
+     * not tell its length, but only the validators of a complete file may be
+     * confirmed by the server.
+     *
+     * @return whether the cached file is complete
+     */
+    private static boolean isComplete(final CacheEntry entry) {
+        return entry.isCached() && entry.getPartialValidator() == null;
+    }
+
+    private static String formatHttpDate(final long time) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneOffset.UTC));
+    }
 
+    /**
+     * Fires requests to all given urls in background. The number of requests
+     * running against one host at the same time is limited by
+     * {@link DeploymentConfiguration#KEY_PARALLEL_URL_PROBING_PER_HOST}.
+     *
+     * @param urls candidate urls of one resource
+     * @param requestProperties headers of the requests
+     * @param requestMethod method to probe with
+     * @return running probes by their url
+     */
+    private static Map<URL, Future<UrlRequestResult>> startProbes(final List<URL> urls, final Map<String, String> requestProperties, final HttpMethod requestMethod) {
+        final Map<URL, Future<UrlRequestResult>> probes = new HashMap<>();
+        for (final URL url : urls) {
+            if (probes.containsKey(url)) {
+                continue;
+            }
+            probes.put(url, CachedDaemonThreadPoolProvider.DAEMON_THREAD_POOL.submit(new Callable<UrlRequestResult>() {
+                @Override
+                public UrlRequestResult call() throws Exception {
+                    final String host = getHost(url);
+                    final Semaphore hostPermits = joinHostProbes(host);
+                    try {
+                        hostPermits.acquire();
+                        try {
+                            return getUrlResponseCodeWithRedirectonResult(url, requestProperties, requestMethod);
+                        } finally {
+                            hostPermits.release();
+                        }
+                    } finally {
+                        leaveHostProbes(host);
                     }
-                } catch (IOException e) {
-                    // continue to next candidate
-                    LOG.error("While processing " + url.toString() + " by " + requestMethod + " for resource " + resource.toString() + " got " + e + ": ", e);
                 }
+            }));
+        }
+        return probes;
+    }
+
+    private static String getHost(final URL url) {
+        return url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+    }
+
+    /**
+     * Registers a probe of the host, it must be followed by
+     * {@link #leaveHostProbes(String)} once the probe is over.
+     *
+     * @return the permits to probe the host
+     */
+    static Semaphore joinHostProbes(final String host) {
+        synchronized (probesPerHost) {
+            HostProbes probes = probesPerHost.get(host);
+            if (probes == null) {
+                int max;
+                try {
+                    max = Integer.parseInt(JNLPRuntime.getConfiguration().getProperty(DeploymentConfiguration.KEY_PARALLEL_URL_PROBING_PER_HOST));
+                } catch (NumberFormatException ex) {
+                    max = DEFAULT_PROBES_PER_HOST;
+                }
+                probes = new HostProbes(new Semaphore(Math.max(1, max)));
+                probesPerHost.put(host, probes);
             }
+            probes.users++;
+            return probes.permits;
         }
+    }
 
-        /* No valid URL, return null */
-        return null;
+    static void leaveHostProbes(final String host) {
+        synchronized (probesPerHost) {
+            final HostProbes probes = probesPerHost.get(host);
+            if (probes != null && --probes.users == 0) {
+                probesPerHost.remove(host);
+            }
+        }
+    }
+
+    static int getProbedHostsCount() {
+        synchronized (probesPerHost) {
+            return probesPerHost.size();
+        }
+    }
+
+    /**
+     * Permits to probe one host, with the number of probes using them.
+     */
+    private static class HostProbes {
+
+        private final Semaphore permits;
+        private int users = 0;
+
+        HostProbes(Semaphore permits) {
+            this.permits = permits;
+        }
+    }
+
+    private static UrlRequestResult getProbeResult(final Future<UrlRequestResult> probe) throws IOException {
+        try {
+            return probe.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for url probe", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
     }
 
     private void downloadResource() {
@@ -346,7 +627,13 @@ public class ResourceDownloader implements Runnable {
         URL downloadTo = resource.getLocation(); //Where to download to
 
         try {
-            connection = getDownloadConnection(downloadFrom);
+            if (pendingConnection != null) {
+                // reuse the connection opened for the download location while connecting, its body was not read yet
+                connection = pendingConnection;
+            } else {
+                connection = getDownloadConnection(downloadFrom);
+            }
+            pendingConnection = null;
 
             String contentEncoding = connection.getContentEncoding();
 
@@ -369,16 +656,12 @@ public class ResourceDownloader implements Runnable {
             }
 
             resource.changeStatus(EnumSet.of(DOWNLOADING), EnumSet.of(DOWNLOADED));
-            synchronized (lock) {
-                lock.notifyAll(); // wake up wait's to check for completion
-            }
             resource.fireDownloadEvent(); // fire DOWNLOADED
+            // the cache grew, keep it within its limits
+            CacheEvictor.getInstance().scheduleEviction();
         } catch (Exception ex) {
             LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
             resource.changeStatus(EnumSet.noneOf(Resource.Status.class), EnumSet.of(ERROR));
-            synchronized (lock) {
-                lock.notifyAll();
-            }
             resource.fireDownloadEvent(); // fire ERROR
         } finally {
             if (connection != null) {
@@ -395,21 +678,66 @@ public class ResourceDownloader implements Runnable {
     }
 
     private void downloadPackGzFile(URLConnection connection, URL downloadFrom, URL downloadTo) throws IOException {
-        downloadFile(connection, downloadFrom);
-
-        uncompressPackGz(downloadFrom, downloadTo, resource.getDownloadVersion());
-        CacheEntry entry = new CacheEntry(downloadTo, resource.getDownloadVersion());
-        storeEntryFields(entry, entry.getCacheFile().length(), connection.getLastModified());
-        markForDelete(downloadFrom);
+        downloadCompressedFile(connection, downloadFrom, downloadTo, true);
     }
 
     private void downloadGZipFile(URLConnection connection, URL downloadFrom, URL downloadTo) throws IOException {
-        downloadFile(connection, downloadFrom);
+        downloadCompressedFile(connection, downloadFrom, downloadTo, false);
+    }
 
-        uncompressGzip(downloadFrom, downloadTo, resource.getDownloadVersion());
+    /**
+     * Inflates (and for pack200 unpacks) the body of the connection while it
+     * is read from the network, so only the final jar is written to the
+     * cache. The compressed body is written to its own cache entry only if
+     * {@link DeploymentConfiguration#KEY_CACHE_KEEP_COMPRESSED} is set. The
+     * state of the decompression can not be resumed, so a broken transfer is
+     * restarted from the beginning, up to
+     * {@link DeploymentConfiguration#KEY_DOWNLOAD_RETRIES} times.
+     */
+    private void downloadCompressedFile(URLConnection connection, URL downloadFrom, URL downloadTo, boolean packgz) throws IOException {
+        // with transparent gzip encoding both urls are the same, and the body has nowhere to be kept
+        final boolean keepCompressed = Boolean.parseBoolean(JNLPRuntime.getConfiguration().getProperty(DeploymentConfiguration.KEY_CACHE_KEEP_COMPRESSED))
+                && !UrlUtils.urlEquals(downloadFrom, downloadTo);
+        final int retries = getDownloadRetries();
+        URLConnection source = connection;
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    resource.setTransferred(0);
+                    uncompressToFile(source.getInputStream(), downloadFrom, downloadTo, packgz, keepCompressed);
+                    break;
+                } catch (IOException ex) {
+                    String IH = "Invalid Http response";
+                    if (IH.equals(ex.getMessage())) {
+                        LOG.error("'" + IH + "' message detected. Attempting direct socket", ex);
+                        Object[] result = UrlUtils.loadUrlWithInvalidHeaderBytes(connection.getURL());
+                        byte[] body = (byte[]) result[1];
+                        LOG.info("Body is: {} bytes long", body.length);
+                        resource.setTransferred(0);
+                        uncompressToFile(new ByteArrayInputStream(body), downloadFrom, downloadTo, packgz, keepCompressed);
+                        break;
+                    }
+                    if (attempt >= retries) {
+                        throw ex;
+                    }
+                    LOG.warn("Download of {} broke ({}). Restarting, attempt {} of {}", downloadFrom, ex.toString(), attempt + 1, retries);
+                    if (source != connection) {
+                        ConnectionFactory.getConnectionFactory().disconnect(source);
+                    }
+                    source = getDownloadConnection(connection.getURL());
+                }
+            }
+        } finally {
+            if (source != connection) {
+                ConnectionFactory.getConnectionFactory().disconnect(source);
+            }
+        }
+
+        if (keepCompressed) {
+            storeEntryFields(new CacheEntry(downloadFrom, resource.getDownloadVersion()), connection.getContentLengthLong(), connection.getLastModified());
+        }
         CacheEntry entry = new CacheEntry(downloadTo, resource.getDownloadVersion());
         storeEntryFields(entry, entry.getCacheFile().length(), connection.getLastModified());
-        markForDelete(downloadFrom);
     }
 
     private void downloadFile(URLConnection connection, URL downloadLocation) throws IOException {
@@ -417,7 +745,9 @@ public class ResourceDownloader implements Runnable {
         LOG.debug("Downloading file: {} into: {}", downloadLocation, downloadEntry.getCacheFile().getCanonicalPath());
         if (!downloadEntry.isCurrent(connection.getLastModified())) {
             try {
-                writeDownloadToFile(downloadLocation, new BufferedInputStream(connection.getInputStream()));
+                // stores the fields of the answer whose body was written, which may be a resumed one
+                writeDownloadToFile(connection, downloadEntry, downloadLocation);
+                return;
             } catch (IOException ex) {
                 String IH = "Invalid Http response";
                 if (ex.getMessage().equals(IH)) {
@@ -428,7 +758,7 @@ public class ResourceDownloader implements Runnable {
                     byte[] body = (byte[]) result[1];
                     LOG.info(head);
                     LOG.info("Body is: {} bytes long", body.length);
-                    writeDownloadToFile(downloadLocation, new ByteArrayInputStream(body));
+                    writeDownloadToFile(downloadLocation, new ByteArrayInputStream(body), false);
                 } else {
                     throw ex;
                 }
@@ -450,23 +780,174 @@ public class ResourceDownloader implements Runnable {
             entry.unlock();
         }
     }
-    
-    private void markForDelete(URL location) {
-        CacheEntry entry = new CacheEntry(location, 
-                                          resource.getDownloadVersion());
+
+    /**
+     * Streams the body of the connection into the cache. The validator of the
+     * body is remembered in the cache entry until the file is complete, so if
+     * the transfer breaks, the bytes already written are kept and only the
+     * rest is requested by a range request - either in one of the
+     * {@link DeploymentConfiguration#KEY_DOWNLOAD_RETRIES} immediate retries,
+     * or in the next download of the resource. If the file changed on the
+     * server meanwhile, the server answers the range request by whole body and
+     * the file is written from the beginning.
+     *
+     * The content length and the last modification date of the answer whose
+     * body completed the file are stored in the cache entry. The given
+     * connection is left to the caller.
+     *
+     * @param connection connection whose body should be stored
+     * @param downloadEntry cache entry of the downloaded file
+     * @param downloadLocation url of the downloaded file
+     * @throws IOException if all attempts failed
+     */
+    private void writeDownloadToFile(final URLConnection connection, final CacheEntry downloadEntry, final URL downloadLocation) throws IOException {
+        final File localFile = CacheUtil.getCacheFile(downloadLocation, resource.getDownloadVersion());
+        final int retries = getDownloadRetries();
+        String validator = downloadEntry.getPartialValidator();
+        // a partial file left by interrupted download is resumed right away
+        boolean resume = validator != null && localFile.length() > 0;
+        URLConnection source = connection;
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    long offset = 0;
+                    if (resume) {
+                        if (source != connection) {
+                            ConnectionFactory.getConnectionFactory().disconnect(source);
+                        }
+                        final long length = localFile.length();
+                        source = getRangeConnection(connection.getURL(), validator, length);
+                        if (isPartialContent(source)) {
+                            if (isRangeFrom(source, length) && hasSameEncoding(source, connection)) {
+                                offset = length;
+                            } else {
+                                // the answer does not continue the file, start over
+                                LOG.debug("Range answer for {} does not continue the file, writing it from the beginning", downloadLocation);
+                                ConnectionFactory.getConnectionFactory().disconnect(source);
+                                source = getIdentityConnection(connection.getURL());
+                            }
+                        }
+                    }
+                    if (offset == 0) {
+                        validator = getRangeValidator(source);
+                        storePartialValidator(downloadEntry, validator);
+                    }
+                    LOG.debug("Writing {} from byte {}", downloadLocation, offset);
+                    resource.setTransferred(offset);
+                    writeDownloadToFile(downloadLocation, new BufferedInputStream(source.getInputStream()), offset > 0);
+                    storePartialValidator(downloadEntry, null);
+                    // a partial answer is only as long as its range
+                    storeEntryFields(downloadEntry, offset > 0 ? localFile.length() : source.getContentLengthLong(), source.getLastModified());
+                    return;
+                } catch (IOException ex) {
+                    if (attempt >= retries || "Invalid Http response".equals(ex.getMessage())) {
+                        throw ex;
+                    }
+                    LOG.warn("Download of {} broke after {} bytes ({}). Resuming, attempt {} of {}", downloadLocation, localFile.length(), ex.toString(), attempt + 1, retries);
+                    resume = true;
+                }
+            }
+        } finally {
+            if (source != connection) {
+                ConnectionFactory.getConnectionFactory().disconnect(source);
+            }
+        }
+    }
+
+    /**
+     * Opens connection requesting the file from the given offset. The range is
+     * only requested if there is validator of the partial file. No encoding
+     * is accepted, as the file is written as it comes and a part of an encoded
+     * body can not be appended to the bytes written so far.
+     */
+    private static URLConnection getRangeConnection(final URL location, final String validator, final long offset) throws IOException {
+        if (validator == null || offset <= 0) {
+            return getIdentityConnection(location);
+        }
+        URLConnection con = ConnectionFactory.getConnectionFactory().openConnection(location);
+        con.addRequestProperty("Accept-Encoding", "identity");
+        con.addRequestProperty("Range", "bytes=" + offset + "-");
+        con.addRequestProperty("If-Range", validator);
+        con.connect();
+        if (con instanceof HttpURLConnection && ((HttpURLConnection) con).getResponseCode() == 416) {
+            // partial file is not what the server thinks, start over
+            ConnectionFactory.getConnectionFactory().disconnect(con);
+            return getIdentityConnection(location);
+        }
+        return con;
+    }
+
+    /**
+     * Opens connection requesting the whole file without any encoding, to
+     * write a file from the beginning whose first body was not encoded.
+     */
+    private static URLConnection getIdentityConnection(final URL location) throws IOException {
+        URLConnection con = ConnectionFactory.getConnectionFactory().openConnection(location);
+        con.addRequestProperty("Accept-Encoding", "identity");
+        con.connect();
+        return con;
+    }
+
+    /**
+     * @return whether the Content-Range of the partial answer starts at the
+     * given offset
+     */
+    private static boolean isRangeFrom(final URLConnection connection, final long offset) {
+        final String range = connection.getHeaderField("Content-Range");
+        return range != null && range.trim().startsWith("bytes " + offset + "-");
+    }
+
+    private static boolean hasSameEncoding(final URLConnection connection, final URLConnection original) {
+        return getEncoding(connection).equalsIgnoreCase(getEncoding(original));
+    }
+
+    private static String getEncoding(final URLConnection connection) {
+        final String encoding = connection.getContentEncoding();
+        return encoding == null || encoding.trim().isEmpty() ? "identity" : encoding.trim();
+    }
+
+    private static boolean isPartialContent(final URLConnection connection) throws IOException {
+        return connection instanceof HttpURLConnection && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL;
+    }
+
+    /**
+     * @return strong entity tag or last modification date of the body, or
+     * null if the body can not be safely resumed
+     */
+    private static String getRangeValidator(final URLConnection connection) {
+        final String etag = connection.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        final long lastModified = connection.getLastModified();
+        if (lastModified > 0) {
+            return formatHttpDate(lastModified);
+        }
+        return null;
+    }
+
+    private static int getDownloadRetries() {
+        try {
+            return Integer.parseInt(JNLPRuntime.getConfiguration().getProperty(DeploymentConfiguration.KEY_DOWNLOAD_RETRIES));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private void storePartialValidator(CacheEntry entry, String validator) {
         entry.lock();
         try {
-            entry.markForDelete();
+            entry.setPartialValidator(validator);
             entry.store();
         } finally {
             entry.unlock();
         }
     }
-    
-    private void writeDownloadToFile(URL downloadLocation, InputStream in) throws IOException {
+
+    private void writeDownloadToFile(URL downloadLocation, InputStream in, boolean append) throws IOException {
         byte buf[] = new byte[1024];
         int rlen;
-        try (OutputStream out = CacheUtil.getOutputStream(downloadLocation, resource.getDownloadVersion())) {
+        try (OutputStream out = CacheUtil.getOutputStream(downloadLocation, resource.getDownloadVersion(), append)) {
             while (-1 != (rlen = in.read(buf))) {
                 resource.incrementTransferred(rlen);
                 out.write(buf, 0, rlen);
@@ -476,42 +957,75 @@ public class ResourceDownloader implements Runnable {
         }
     }
 
-    private void uncompressGzip(URL compressedLocation, URL uncompressedLocation, Version version) throws IOException {
-        LOG.debug("Extracting gzip: {} to {}", compressedLocation, uncompressedLocation);
-        byte buf[] = new byte[1024];
-        int rlen;
-
-        try (GZIPInputStream gzInputStream = new GZIPInputStream(new FileInputStream(CacheUtil
-                .getCacheFile(compressedLocation, version)))) {
-            InputStream inputStream = new BufferedInputStream(gzInputStream);
-
-            BufferedOutputStream outputStream = new BufferedOutputStream(new FileOutputStream(CacheUtil
-                    .getCacheFile(uncompressedLocation, version)));
+    private void uncompressToFile(InputStream body, URL compressedLocation, URL uncompressedLocation, boolean packgz, boolean keepCompressed) throws IOException {
+        final Version version = resource.getDownloadVersion();
+        LOG.debug("Extracting {}: {} to {}", packgz ? "packgz" : "gzip", compressedLocation, uncompressedLocation);
 
-            while (-1 != (rlen = inputStream.read(buf))) {
-                outputStream.write(buf, 0, rlen);
+        try (OutputStream compressedCopy = keepCompressed ? CacheUtil.getOutputStream(compressedLocation, version, false) : null;
+             InputStream inputStream = new BufferedInputStream(new GZIPInputStream(
+                     new TransferredInputStream(body, compressedCopy), 8192))) {
+            if (packgz) {
+                try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(CacheUtil
+                        .getCacheFile(uncompressedLocation, version)))) {
+                    Pack200.Unpacker unpacker = Pack200.newUnpacker();
+                    unpacker.unpack(inputStream, outputStream);
+                }
+            } else {
+                try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(CacheUtil
+                        .getCacheFile(uncompressedLocation, version)))) {
+                    byte buf[] = new byte[8192];
+                    int rlen;
+                    while (-1 != (rlen = inputStream.read(buf))) {
+                        outputStream.write(buf, 0, rlen);
+                    }
+                }
             }
-
-            outputStream.close();
-            inputStream.close();
         }
     }
 
-    private void uncompressPackGz(URL compressedLocation, URL uncompressedLocation, Version version) throws IOException {
-        LOG.debug("Extracting packgz: {} to {}", compressedLocation, uncompressedLocation);
+    /**
+     * Counts the compressed bytes read from the network into the transferred
+     * size of the resource, and optionally copies them to a second stream.
+     */
+    private class TransferredInputStream extends FilterInputStream {
+
+        private final OutputStream copy;
 
-        try (GZIPInputStream gzInputStream = new GZIPInputStream(new FileInputStream(CacheUtil
-                .getCacheFile(compressedLocation, version)))) {
-            InputStream inputStream = new BufferedInputStream(gzInputStream);
+        TransferredInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
 
-            JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(CacheUtil
-                    .getCacheFile(uncompressedLocation, version)));
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                resource.incrementTransferred(1);
+                if (copy != null) {
+                    copy.write(b);
+                }
+            }
+            return b;
+        }
 
-            Pack200.Unpacker unpacker = Pack200.newUnpacker();
-            unpacker.unpack(inputStream, outputStream);
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int rlen = super.read(b, off, len);
+            if (rlen > 0) {
+                resource.incrementTransferred(rlen);
+                if (copy != null) {
+                    copy.write(b, off, rlen);
+                }
+            }
+            return rlen;
+        }
 
-            outputStream.close();
-            inputStream.close();
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes would be missing in the copy
+            byte[] buf = new byte[(int) Math.min(n, 8192)];
+            int rlen = read(buf, 0, buf.length);
+            return Math.max(rlen, 0);
         }
     }
 
@@ -534,6 +1048,7 @@ public class ResourceDownloader implements Runnable {
 
         Long lastModified;
         Long length;
+        String etag;
 
         public UrlRequestResult() {
         }
@@ -558,6 +1073,14 @@ public class ResourceDownloader implements Runnable {
                     || result == 308);
         }
 
+        /**
+         * @return whether the server answered a conditional request by 304,
+         * so the cached copy is current
+         */
+        public boolean isNotModified() {
+            return result == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+
         /**
          * @return whether the return code is OK one - anything except <200,300)
          */
@@ -32,6 +32,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static net.sourceforge.jnlp.cache.Resource.Status.CONNECTED;
 import static net.sourceforge.jnlp.cache.Resource.Status.CONNECTING;
@@ -92,9 +96,6 @@ public class ResourceTracker {
     // defines
     //    ResourceTracker.Downloader (download threads)
 
-      /** notified on initialization or download of a resource */
-    private static final Object lock = new Object(); // used to lock static structures
-
     /** the resources known about by this resource tracker */
     private final List<Resource> resources = new ArrayList<>();
 
@@ -132,6 +133,22 @@ public class ResourceTracker {
      * @param updatePolicy whether to check for updates if already in cache
      */
     public void addResource(URL location, Version version, DownloadOptions options, UpdatePolicy updatePolicy) {
+        addResource(location, version, options, updatePolicy, DownloadPriority.NORMAL);
+    }
+
+    /**
+     * Add a resource identified by the specified location and
+     * version.  The tracker only downloads one version of a given
+     * resource per instance (ie cannot download both versions 1 and
+     * 2 of a resource in the same tracker).
+     *
+     * @param location the location of the resource
+     * @param version the resource version
+     * @param options options to control download
+     * @param updatePolicy whether to check for updates if already in cache
+     * @param priority how urgent the download is
+     */
+    public void addResource(URL location, Version version, DownloadOptions options, UpdatePolicy updatePolicy, DownloadPriority priority) {
         if (location == null)
             throw new IllegalResourceDescriptorException("location==null");
         try {
@@ -142,12 +159,21 @@ public class ResourceTracker {
         Resource resource = Resource.getResource(location, version, updatePolicy);
 
         synchronized (resources) {
-            if (resources.contains(resource))
+            if (resources.contains(resource)) {
+                resource.raisePriority(priority);
                 return;
+            }
             resource.addTracker(this);
             resources.add(resource);
         }
 
+        if (resource.isInitialized()) {
+            // shared with another tracker, do not make it less urgent for it
+            resource.raisePriority(priority);
+        } else {
+            resource.setPriority(priority);
+        }
+
         if (options == null) {
             options = new DownloadOptions(false, false);
         }
@@ -492,14 +518,12 @@ public class ResourceTracker {
     }
 
     /**
-     * Start a new download thread.
-     * <p>
-     * Calls to this method should be synchronized on lock.
-     * </p>
+     * Schedules the download of the resource. It is started when the
+     * {@link DownloadScheduler} has a free slot for it.
      * @param resource  resource to be download
      */
     protected void startDownloadThread(Resource resource) {
-        CachedDaemonThreadPoolProvider.DAEMON_THREAD_POOL.execute(new ResourceDownloader(resource, lock));
+        DownloadScheduler.getInstance().schedule(resource, new ResourceDownloader(resource));
     }
 
     static Resource selectByFilter(Collection<Resource> source, Filter<Resource> filter) {
@@ -528,7 +552,7 @@ public class ResourceTracker {
      * Selects a resource from the source list that has the
      * specified flag set.
      * <p>
-     * Calls to this method should be synchronized on lock and
+     * Calls to this method should be synchronized on the
      * source list.
      * </p>
      */
@@ -579,43 +603,32 @@ public class ResourceTracker {
      * @throws InterruptedException if another thread interrupted the wait
      */
     private boolean wait(Resource[] resources, long timeout) throws InterruptedException {
-        long startTime = System.currentTimeMillis();
-
         // start them downloading / connecting in background
         for (Resource resource : resources) {
+            resource.raisePriority(DownloadPriority.WAITED);
             startResource(resource);
         }
 
-        // wait for completion
-        while (true) {
-            boolean finished = true;
-
-            synchronized (lock) {
-                // check for completion
-                for (Resource resource : resources) {
-                    //NetX Deadlocking may be solved by removing this
-                    //synch block.
-                    synchronized (resource) {
-                        if (!(resource.isSet(DOWNLOADED) || resource.isSet(ERROR))) {
-                            finished = false;
-                            break;
-                        }
-                    }
-                }
-                if (finished)
-                    return true;
-
-                // wait
-                long waitTime = 0;
-
-                if (timeout > 0) {
-                    waitTime = timeout - (System.currentTimeMillis() - startTime);
-                    if (waitTime <= 0)
-                        return false;
-                }
+        // the futures are taken after starting, as a forced update resets them
+        final CompletableFuture<?>[] downloaded = new CompletableFuture<?>[resources.length];
+        for (int i = 0; i < resources.length; i++) {
+            downloaded[i] = resources[i].getDownloadedFuture();
+        }
 
-                lock.wait(waitTime);
+        // wait for completion
+        final CompletableFuture<Void> all = CompletableFuture.allOf(downloaded);
+        try {
+            if (timeout > 0) {
+                all.get(timeout, TimeUnit.MILLISECONDS);
+            } else {
+                all.get();
             }
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (ExecutionException ex) {
+            // the futures are only ever completed normally
+            throw new IllegalStateException(ex);
         }
     }
 
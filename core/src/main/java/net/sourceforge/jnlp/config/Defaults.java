@@ -324,17 +324,62 @@ public class Defaults {
                         null,
                         null
                 },
+                {
+                        DeploymentConfiguration.KEY_PARALLEL_URL_PROBING,
+                        BasicValueValidators.getBooleanValidator(),
+                        String.valueOf(false)
+                },
+                {
+                        DeploymentConfiguration.KEY_PARALLEL_URL_PROBING_PER_HOST,
+                        BasicValueValidators.getRangedIntegerValidator(1, 64),
+                        String.valueOf(4)
+                },
+                {
+                        DeploymentConfiguration.KEY_SINGLE_REQUEST_DOWNLOAD,
+                        BasicValueValidators.getBooleanValidator(),
+                        String.valueOf(false)
+                },
+                {
+                        DeploymentConfiguration.KEY_DOWNLOAD_RETRIES,
+                        BasicValueValidators.getRangedIntegerValidator(0, 100),
+                        String.valueOf(3)
+                },
+                {
+                        DeploymentConfiguration.KEY_DOWNLOAD_MAX_CONCURRENT,
+                        BasicValueValidators.getRangedIntegerValidator(1, 256),
+                        String.valueOf(8)
+                },
+                {
+                        DeploymentConfiguration.KEY_DOWNLOAD_MAX_PER_HOST,
+                        BasicValueValidators.getRangedIntegerValidator(1, 64),
+                        String.valueOf(4)
+                },
                 /* cache and optional package repository */
                 {
                         "deployment.cache.max.size",
                         BasicValueValidators.getRangedIntegerValidator(-1, Integer.MAX_VALUE),
                         String.valueOf("-1")
                 },
+                {
+                        DeploymentConfiguration.KEY_CACHE_MAX_SIZE_PER_DOMAIN,
+                        BasicValueValidators.getRangedIntegerValidator(-1, Integer.MAX_VALUE),
+                        String.valueOf(-1)
+                },
+                {
+                        DeploymentConfiguration.KEY_CACHE_BACKGROUND_EVICTION,
+                        BasicValueValidators.getBooleanValidator(),
+                        String.valueOf(false)
+                },
                 {
                         "deployment.cache.jarcompression",
                         BasicValueValidators.getRangedIntegerValidator(0, 10),
                         String.valueOf(0)
                 },
+                {
+                        DeploymentConfiguration.KEY_CACHE_KEEP_COMPRESSED,
+                        BasicValueValidators.getBooleanValidator(),
+                        String.valueOf(false)
+                },
                 {
                         "deployment.javapi.cache.enabled",
                         BasicValueValidators.getBooleanValidator(),
@@ -430,6 +475,11 @@ public class Defaults {
                         BasicValueValidators.getRangedIntegerValidator(0, 10000),
                         String.valueOf(500)
                 },
+                {
+                        DeploymentConfiguration.KEY_CLASS_DATA_SHARING,
+                        BasicValueValidators.getBooleanValidator(),
+                        String.valueOf(false)
+                },
                 {
                         DeploymentConfiguration.IGNORE_HEADLESS_CHECK,
                         BasicValueValidators.getBooleanValidator(),
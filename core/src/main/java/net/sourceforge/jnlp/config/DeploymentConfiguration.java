@@ -103,9 +103,18 @@ public final class DeploymentConfiguration {
     public static final String KEY_SYSTEM_CACHE_DIR = "deployment.system.cachedir";
 
     public static final String  KEY_CACHE_MAX_SIZE = "deployment.cache.max.size";
+    /** Integer. Maximal size of the cached resources of a single host in megabytes, -1 for unlimited */
+    public static final String KEY_CACHE_MAX_SIZE_PER_DOMAIN = "deployment.cache.max.size.domain";
+    /**
+     * Boolean. Enforce the cache size limits in background after downloads, not only when the cache is cleaned on exit.
+     * Off by default, as only the resources in use by this JVM are protected from eviction.
+     */
+    public static final String KEY_CACHE_BACKGROUND_EVICTION = "deployment.cache.eviction.background";
 
     public static final String KEY_CACHE_ENABLED = "deployment.javapi.cache.enabled";
     public static final String KEY_CACHE_COMPRESSION_ENABLED = "deployment.cache.jarcompression";
+    /** Boolean. Keep the gzip or pack200-gzip body of a compressed download in the cache next to the unpacked jar */
+    public static final String KEY_CACHE_KEEP_COMPRESSED = "deployment.cache.keep.compressed";
 
     public static final String KEY_USER_LOG_DIR = "deployment.user.logdir";
     public static final String KEY_USER_TMP_DIR = "deployment.user.tmp";
@@ -185,6 +194,19 @@ public final class DeploymentConfiguration {
     public static final String KEY_PROXY_SOCKS4_PORT = "deployment.proxy.socks.port";
     public static final String KEY_PROXY_OVERRIDE_HOSTS = "deployment.proxy.override.hosts";
 
+    /** Boolean. Probe all candidate urls of a resource concurrently instead of one after another */
+    public static final String KEY_PARALLEL_URL_PROBING = "deployment.connection.probe.parallel";
+    /** Integer. Maximal number of concurrent probes sent to a single host */
+    public static final String KEY_PARALLEL_URL_PROBING_PER_HOST = "deployment.connection.probe.perhost";
+    /** Boolean. Download the resource body with the same GET request which checked its availability */
+    public static final String KEY_SINGLE_REQUEST_DOWNLOAD = "deployment.connection.singlerequest";
+    /** Integer. How many times an interrupted download is resumed before the resource fails */
+    public static final String KEY_DOWNLOAD_RETRIES = "deployment.connection.download.retries";
+    /** Integer. Maximal number of resources downloaded at the same time */
+    public static final String KEY_DOWNLOAD_MAX_CONCURRENT = "deployment.connection.download.max";
+    /** Integer. Maximal number of resources downloaded from a single host at the same time */
+    public static final String KEY_DOWNLOAD_MAX_PER_HOST = "deployment.connection.download.perhost";
+
     /*
      * Logging
      */
@@ -234,6 +256,9 @@ public final class DeploymentConfiguration {
     public static final String LEGACY_WIN32_URL__HANDLER="rundll32 url.dll,FileProtocolHandler ";
     
     public static final String KEY_UPDATE_TIMEOUT = "deployment.javaws.update.timeout";
+
+    /** Boolean. Record a class data sharing archive of applications started in a new JVM, and use it in later runs */
+    public static final String KEY_CLASS_DATA_SHARING = "deployment.javaws.cds";
     
     public static final String IGNORE_HEADLESS_CHECK = "deployment.headless.ignore";
 
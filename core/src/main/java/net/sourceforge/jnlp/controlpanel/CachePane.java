@@ -22,6 +22,7 @@ import net.sourceforge.jnlp.cache.CacheDirectory;
 import net.sourceforge.jnlp.cache.CacheEntry;
 import net.sourceforge.jnlp.cache.CacheUtil;
 import net.sourceforge.jnlp.cache.DirectoryNode;
+import net.sourceforge.jnlp.cache.RecentlyUsedJournal;
 import net.sourceforge.jnlp.config.DeploymentConfiguration;
 import net.sourceforge.jnlp.config.PathsAndFiles;
 import net.sourceforge.jnlp.runtime.Translator;
@@ -364,6 +365,9 @@ public class CachePane extends JPanel {
                 File recentlyUsedFile = new File(PathsAndFiles.getRecentlyUsedFile().getFullPath(config));
                 PropertiesFile pf = new PropertiesFile(recentlyUsedFile);
                 pf.load();
+                // entries added or touched since the last compaction are only in the journal
+                RecentlyUsedJournal journal = new RecentlyUsedJournal(recentlyUsedFile);
+                journal.replay(pf, 0);
                 Enumeration<Object> en = pf.keys();
                 while (en.hasMoreElements()) {
                     String key = (String) en.nextElement();
@@ -372,6 +376,7 @@ public class CachePane extends JPanel {
                     }
                 }
                 pf.store();
+                journal.truncate();
             }
         });
     }
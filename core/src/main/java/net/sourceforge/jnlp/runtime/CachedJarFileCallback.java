@@ -39,7 +39,6 @@ exception statement from your version.
 package net.sourceforge.jnlp.runtime;
 
 import net.sourceforge.jnlp.security.ConnectionFactory;
-import net.sourceforge.jnlp.util.JarFile;
 import net.sourceforge.jnlp.util.UrlUtils;
 import net.sourceforge.jnlp.util.logging.OutputController;
 import org.slf4j.Logger;
@@ -105,23 +104,11 @@ final class CachedJarFileCallback implements URLJarFileCallBack {
         }
 
         if (UrlUtils.isLocalFile(localUrl)) {
-            // if it is known to us, just return the cached file
-            JarFile returnFile = new JarFile(localUrl.getPath());
-            
-            try {
-                
-                // Blank out the class-path because:
-                // 1) Web Start does not support it
-                // 2) For the plug-in, we want to cache files from class-path so we do it manually
-                returnFile.getManifest().getMainAttributes().putValue("Class-Path", "");
-
-                LOG.debug("Class-Path attribute cleared for {}", returnFile.getName());
-                
-
-            } catch (NullPointerException npe) {
-                // Discard NPE here. Maybe there was no manifest, maybe there were no attributes, etc.
-            }
-
+            // if it is known to us, just return the cached file, read through
+            // the pooled jar with the class-path left out of the manifest
+            final java.util.jar.JarFile returnFile = JarFilePool.getInstance()
+                    .acquireWithoutClassPath(new File(localUrl.getPath()));
+            LOG.debug("Class-Path attribute cleared for {}", returnFile.getName());
             return returnFile;
         } else {
             // throw new IllegalStateException("a non-local file in cache");
@@ -47,9 +47,15 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
@@ -68,12 +74,15 @@ import net.sourceforge.jnlp.JNLPMatcherException;
 import net.sourceforge.jnlp.LaunchDesc;
 import net.sourceforge.jnlp.LaunchException;
 import net.sourceforge.jnlp.NullJnlpFileException;
+import net.sourceforge.jnlp.PackageDesc;
 import net.sourceforge.jnlp.ParserSettings;
 import net.sourceforge.jnlp.PluginBridge;
 import net.sourceforge.jnlp.ResourcesDesc;
 import net.sourceforge.jnlp.SecurityDesc;
 import net.sourceforge.jnlp.Version;
 import net.sourceforge.jnlp.cache.CacheUtil;
+import net.sourceforge.jnlp.cache.CachedDaemonThreadPoolProvider;
+import net.sourceforge.jnlp.cache.DownloadPriority;
 import net.sourceforge.jnlp.cache.IllegalResourceDescriptorException;
 import net.sourceforge.jnlp.cache.NativeLibraryStorage;
 import net.sourceforge.jnlp.cache.ResourceTracker;
@@ -108,6 +117,11 @@ public class JNLPClassLoader extends URLClassLoader {
 
     private final static Logger LOG = LoggerFactory.getLogger(JNLPClassLoader.class);
 
+    static {
+        // classes are loaded under per class name locks, see loadClass(String)
+        ClassLoader.registerAsParallelCapable();
+    }
+
     // todo: initializePermissions should get the permissions from
     // extension classes too so that main file classes can load
     // resources in an extension.
@@ -144,6 +158,12 @@ public class JNLPClassLoader extends URLClassLoader {
      */
     private static Map<String, ReentrantLock> uniqueKeyToLock = new HashMap<>();
 
+    /**
+     * JNLP files of extensions parsed ahead by the outermost
+     * {@link #initializeExtensions()} of this thread, see {@link #parseExtensions}
+     */
+    private static final ThreadLocal<Map<String, Future<JNLPFile>>> parsedExtensions = new ThreadLocal<>();
+
     /**
      * Provides a search path & temporary storage for native code
      */
@@ -205,11 +225,11 @@ public class JNLPClassLoader extends URLClassLoader {
     private final ArrayList<Permission> runtimePermissions = new ArrayList<>();
 
     /**
-     * all jars not yet part of classloader or active Synchronized since this
+     * all jars not yet part of classloader or active. Concurrent since this
      * field may become shared data between multiple classloading threads. See
      * loadClass(String) and CodebaseClassLoader.findClassNonRecursive(String).
      */
-    private final List<JARDesc> available = Collections.synchronizedList(new ArrayList<JARDesc>());
+    private final List<JARDesc> available = new CopyOnWriteArrayList<>();
 
     /**
      * the jar cert verifier tool to verify our jars
@@ -219,40 +239,71 @@ public class JNLPClassLoader extends URLClassLoader {
     private SigningState signing = SigningState.NONE;
 
     /**
-     * ArrayList containing jar indexes for various jars available to this
-     * classloader Synchronized since this field may become shared data between
-     * multiple classloading threads/ See loadClass(String) and
+     * List containing jar indexes for various jars available to this
+     * classloader. Concurrent since this field may become shared data between
+     * multiple classloading threads. See loadClass(String) and
      * CodebaseClassLoader.findClassNonRecursive(String).
      */
-    private final List<JarIndexAccess> jarIndexes = Collections.synchronizedList(new ArrayList<JarIndexAccess>());
+    private final List<JarIndexAccess> jarIndexes = new CopyOnWriteArrayList<>();
 
     /**
-     * Set of classpath strings declared in the manifest.mf files Synchronized
+     * Set of classpath strings declared in the manifest.mf files. Concurrent
      * since this field may become shared data between multiple classloading
      * threads. See loadClass(String) and
      * CodebaseClassLoader.findClassNonRecursive(String).
      */
-    private final Set<String> classpaths = Collections.synchronizedSet(new HashSet<String>());
+    private final Set<String> classpaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     /**
-     * File entries in the jar files available to this classloader Synchronized
-     * sinc this field may become shared data between multiple classloading
+     * File entries in the jar files available to this classloader. Concurrent
+     * since this field may become shared data between multiple classloading
      * threads. See loadClass(String) and
      * CodebaseClassLoader.findClassNonRecursive(String).
      */
-    private final Set<String> jarEntries = Collections.synchronizedSet(new TreeSet<String>());
+    private final Set<String> jarEntries = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     /**
-     * Map of specific original (remote) CodeSource Urls to securitydesc
-     * Synchronized since this field may become shared data between multiple
+     * Map of specific original (remote) CodeSource Urls to securitydesc.
+     * Concurrent since this field may become shared data between multiple
      * classloading threads. See loadClass(String) and
-     * CodebaseClassLoader.findClassNonRecursive(String).
+     * CodebaseClassLoader.findClassNonRecursive(String). Use
+     * {@link #putJarSecurity(URL, SecurityDesc)} to add to it.
+     */
+    private final Map<URL, SecurityDesc> jarLocationSecurityMap = new ConcurrentHashMap<>();
+
+    /**
+     * Packages of the jars of this classloader, used to go straight to the
+     * jar containing a class or resource.
+     */
+    private final JarPackageIndex packageIndex = new JarPackageIndex();
+
+    /**
+     * Jars of this classloader opened from the {@link JarFilePool} by the
+     * absolute path of their cached file, held from their first check until
+     * the classloader is no longer used.
+     */
+    private final Map<String, JarFile> pooledJarFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Lazy jars used by the application, to download them in advance in the
+     * next run.
+     */
+    private final LazyJarTrace lazyJarTrace = new LazyJarTrace(CachedDaemonThreadPoolProvider.DAEMON_THREAD_POOL);
+
+    /**
+     * Counts the jars and extensions added to this classloader, so that
+     * lookups which failed before are tried again once new jars are there.
+     */
+    private final AtomicLong addedJarsCount = new AtomicLong();
+
+    /**
+     * Classes and resources which were not found with the current jars.
      */
-    private final Map<URL, SecurityDesc> jarLocationSecurityMap
-            = Collections.synchronizedMap(new HashMap<URL, SecurityDesc>());
+    private final NegativeLookupCache classMisses = new NegativeLookupCache();
+    private final NegativeLookupCache resourceMisses = new NegativeLookupCache();
 
-    /*Set to prevent once tried-to-get resources to be tried again*/
-    private final Set<URL> alreadyTried = Collections.synchronizedSet(new HashSet<URL>());
+    /*Map to prevent once tried-to-get resources to be tried again, other threads wait for the running try*/
+    private final ConcurrentHashMap<URL, SecurityTry> alreadyTried = new ConcurrentHashMap<>();
 
     /**
      * Loader for codebase (which is a path, rather than a file)
@@ -552,6 +603,94 @@ public class JNLPClassLoader extends URLClassLoader {
         return loader;
     }
 
+    /**
+     * Returns a JNLP classloader for an extension whose JNLP file is parsed
+     * ahead, see {@link #parseExtensions}.
+     */
+    private static JNLPClassLoader getInstance(URL location, String uniqueKey, Future<JNLPFile> parsed, UpdatePolicy policy, String mainName, boolean enableCodeBase)
+            throws Exception {
+
+        JNLPClassLoader loader;
+
+        synchronized (getUniqueKeyLock(uniqueKey)) {
+            loader = uniqueKeyToLoader.get(uniqueKey);
+
+            if (loader == null || !location.equals(loader.getJNLPFile().getFileLocation())) {
+                loader = getInstance(getParsedExtension(parsed), policy, mainName, enableCodeBase);
+            }
+        }
+
+        return loader;
+    }
+
+    /**
+     * Starts parsing the JNLP files of the extensions, and of their
+     * extensions once they are parsed, on the
+     * {@link CachedDaemonThreadPoolProvider#DAEMON_THREAD_POOL}. A file which
+     * is already being parsed, or whose loader already exists, is not parsed
+     * again.
+     *
+     * @param parsed the files being parsed, by {@link #getExtensionKey}
+     * @return the pending files, in the order of the extensions
+     */
+    private static List<Future<JNLPFile>> parseExtensions(final Map<String, Future<JNLPFile>> parsed, ExtensionDesc[] extDescs,
+            final String uniqueKey, final ParserSettings settings, final UpdatePolicy policy, final AccessControlContext acc) {
+        final List<Future<JNLPFile>> result = new ArrayList<>();
+        for (final ExtensionDesc ext : extDescs) {
+            final JNLPClassLoader existing = uniqueKeyToLoader.get(uniqueKey);
+            if (existing != null && ext.getLocation().equals(existing.getJNLPFile().getFileLocation())) {
+                // the loader and those of its extensions are there already
+                final Future<JNLPFile> loaded = CompletableFuture.completedFuture(existing.getJNLPFile());
+                final Future<JNLPFile> pending = parsed.putIfAbsent(getExtensionKey(ext), loaded);
+                result.add(pending == null ? loaded : pending);
+                continue;
+            }
+            final FutureTask<JNLPFile> parse = new FutureTask<>(new Callable<JNLPFile>() {
+                @Override
+                public JNLPFile call() throws Exception {
+                    final JNLPFile jnlpFile = AccessController.doPrivileged(new PrivilegedExceptionAction<JNLPFile>() {
+                        @Override
+                        public JNLPFile run() throws Exception {
+                            return new JNLPFile(ext.getLocation(), uniqueKey, ext.getVersion(), settings, policy);
+                        }
+                    }, acc);
+                    parseExtensions(parsed, jnlpFile.getResources().getExtensions(), uniqueKey, settings, policy, acc);
+                    return jnlpFile;
+                }
+            });
+            final Future<JNLPFile> pending = parsed.putIfAbsent(getExtensionKey(ext), parse);
+            if (pending == null) {
+                CachedDaemonThreadPoolProvider.DAEMON_THREAD_POOL.execute(parse);
+                result.add(parse);
+            } else {
+                result.add(pending);
+            }
+        }
+        return result;
+    }
+
+    private static String getExtensionKey(ExtensionDesc ext) {
+        return ext.getLocation() + " " + ext.getVersion();
+    }
+
+    private static JNLPFile getParsedExtension(Future<JNLPFile> parsed) throws Exception {
+        try {
+            return parsed.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof PrivilegedActionException) {
+                cause = ((PrivilegedActionException) cause).getException();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw ex;
+        }
+    }
+
     /**
      * Load the extensions specified in the JNLP file.
      */
@@ -574,19 +713,34 @@ public class JNLPClassLoader extends URLClassLoader {
             }
         }
 
-        //if (ext != null) {
-        for (ExtensionDesc ext : extDescs) {
-            try {
-                String uniqueKey = this.getJNLPFile().getUniqueKey();
-                JNLPClassLoader loader = getInstance(ext.getLocation(), uniqueKey, ext.getVersion(), file.getParserSettings(), updatePolicy, mainClass, this.enableCodeBase);
-                loaderList.add(loader);
-            } catch (Exception ex) {
-                LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+        // the extension loaders are created in order, but the JNLP files of
+        // all extensions of the outermost loader are parsed concurrently
+        Map<String, Future<JNLPFile>> parsed = parsedExtensions.get();
+        final boolean outermost = parsed == null;
+        if (outermost) {
+            parsed = new ConcurrentHashMap<>();
+            parsedExtensions.set(parsed);
+        }
+        try {
+            String uniqueKey = this.getJNLPFile().getUniqueKey();
+            List<Future<JNLPFile>> files = parseExtensions(parsed, extDescs, uniqueKey, file.getParserSettings(), updatePolicy,
+                    AccessController.getContext());
+            for (int i = 0; i < extDescs.length; i++) {
+                try {
+                    JNLPClassLoader loader = getInstance(extDescs[i].getLocation(), uniqueKey, files.get(i), updatePolicy, mainClass, this.enableCodeBase);
+                    loaderList.add(loader);
+                } catch (Exception ex) {
+                    LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+                }
+            }
+        } finally {
+            if (outermost) {
+                parsedExtensions.remove();
             }
         }
-        //}
 
         loaders = loaderList.toArray(new JNLPClassLoader[loaderList.size()]);
+        addedJarsCount.incrementAndGet();
     }
 
     /**
@@ -621,8 +775,7 @@ public class JNLPClassLoader extends URLClassLoader {
         }
         boolean isInvalid = false;
         try {
-            JarFile jarFile = new JarFile(cacheFile.getAbsolutePath());
-            jarFile.close();
+            holdJar(cacheFile);
         } catch (IOException ioe) {
             //Catch a ZipException or any other read failure
             isInvalid = true;
@@ -630,6 +783,51 @@ public class JNLPClassLoader extends URLClassLoader {
         return isInvalid;
     }
 
+    /**
+     * Returns the jar of the cached file from the {@link JarFilePool}, taking
+     * the reference of this classloader on the first call. The reference is
+     * held until {@link #decrementLoaderUseCount()}, so the checks, the
+     * verification and the activation of the jar share one open jar.
+     *
+     * @param localFile the cached file of the jar
+     * @return the held jar, which must not be closed by the caller
+     * @throws IOException if the jar can not be opened
+     */
+    private JarFile holdJar(File localFile) throws IOException {
+        final String key = localFile.getAbsolutePath();
+        final JarFile held = pooledJarFiles.get(key);
+        if (held != null) {
+            return held;
+        }
+        final JarFile opened = JarFilePool.getInstance().acquire(localFile);
+        final JarFile other = pooledJarFiles.putIfAbsent(key, opened);
+        if (other != null) {
+            opened.close();
+            return other;
+        }
+        return opened;
+    }
+
+    /**
+     * Takes the reference of this classloader to the downloaded jars before
+     * they are checked. Jars which can not be opened are left to the checks.
+     *
+     * @param jars the downloaded jars
+     */
+    private void holdJars(List<JARDesc> jars) {
+        for (JARDesc jar : jars) {
+            final File localFile = tracker.getCacheFile(jar.getLocation());
+            if (localFile == null) {
+                continue;
+            }
+            try {
+                holdJar(localFile);
+            } catch (IOException ex) {
+                LOG.debug("Jar {} could not be opened: {}", localFile, ex.getMessage());
+            }
+        }
+    }
+
     /**
      * Determine how invalid jars should be handled
      *
@@ -690,6 +888,11 @@ public class JNLPClassLoader extends URLClassLoader {
 
         List<JARDesc> initialJars = new ArrayList<>();
 
+        // lazy jars used in the previous run are likely needed again soon,
+        // so they are downloaded together with the eager ones
+        lazyJarTrace.load(resources.getMainJAR(), jars);
+        final Set<JARDesc> previouslyUsed = lazyJarTrace.getPreviouslyUsed(jars);
+
         for (JARDesc jar : jars) {
 
             available.add(jar);
@@ -699,7 +902,8 @@ public class JNLPClassLoader extends URLClassLoader {
             }
             tracker.addResource(jar.getLocation(),
                     jar.getVersion(), file.getDownloadOptions(),
-                    jar.isCacheable() ? JNLPRuntime.getDefaultUpdatePolicy() : UpdatePolicy.FORCE);
+                    jar.isCacheable() ? JNLPRuntime.getDefaultUpdatePolicy() : UpdatePolicy.FORCE,
+                    jar.isEager() || jar.isMain() || previouslyUsed.contains(jar) ? DownloadPriority.NORMAL : DownloadPriority.PREFETCH);
         }
 
         //If there are no eager jars, initialize the first jar
@@ -711,7 +915,11 @@ public class JNLPClassLoader extends URLClassLoader {
             fillInPartJars(initialJars); // add in each initial part's lazy jars
         }
 
+        if (JNLPRuntime.isVerifying()) {
+            jcv.readWhenDownloaded(initialJars, tracker); // while the others are downloading
+        }
         waitForJars(initialJars); //download the jars first.
+        holdJars(initialJars);
 
         //A ZipException will propagate later on if the jar is invalid and not checked here
         if (shouldFilterInvalidJars()) {
@@ -853,7 +1061,7 @@ public class JNLPClassLoader extends URLClassLoader {
         for (JARDesc jarDesc : validJars) {
             final URL codebase = getJnlpFileCodebase();
             final SecurityDesc jarSecurity = securityDelegate.getCodebaseSecurityDesc(jarDesc, codebase);
-            jarLocationSecurityMap.put(jarDesc.getLocation(), jarSecurity);
+            putJarSecurity(jarDesc.getLocation(), jarSecurity);
         }
 
         activateJars(initialJars);
@@ -960,8 +1168,7 @@ public class JNLPClassLoader extends URLClassLoader {
                     continue; // JAR not found. Keep going.
                 }
 
-                JarFile jarFile = new JarFile(localFile);
-
+                JarFile jarFile = holdJar(localFile);
                 for (JarEntry entry : Collections.list(jarFile.entries())) {
                     String jeName = entry.getName().replaceAll("/", ".");
                     if (jeName.equals(desiredJarEntryName)) {
@@ -970,8 +1177,6 @@ public class JNLPClassLoader extends URLClassLoader {
                         break;
                     }
                 }
-
-                jarFile.close();
             } catch (IOException e) {
                 /*
                  * After this exception is caught, it is escaped. This will skip
@@ -1007,9 +1212,8 @@ public class JNLPClassLoader extends URLClassLoader {
         File f = tracker.getCacheFile(location);
 
         if (f != null) {
-            JarFile mainJar = null;
             try {
-                mainJar = new JarFile(f);
+                JarFile mainJar = holdJar(f);
                 Manifest manifest = mainJar.getManifest();
                 if (manifest == null || manifest.getMainAttributes() == null) {
                     //yes, jars without manifest exists
@@ -1018,8 +1222,6 @@ public class JNLPClassLoader extends URLClassLoader {
                 attributeValue = manifest.getMainAttributes().getValue(attribute);
             } catch (IOException ioe) {
                 attributeValue = null;
-            } finally {
-                StreamUtils.closeSilently(mainJar);
             }
         }
 
@@ -1286,13 +1488,11 @@ public class JNLPClassLoader extends URLClassLoader {
             String part = jars.get(x).getPart();
 
             // "available" field can be affected by two different threads
-            // working in loadClass(String)
-            synchronized (available) {
-                for (JARDesc jar : available) {
-                    if (part != null && part.equals(jar.getPart())) {
-                        if (!jars.contains(jar)) {
-                            jars.add(jar);
-                        }
+            // working in loadClass(String), iterating works on a snapshot
+            for (JARDesc jar : available) {
+                if (part != null && part.equals(jar.getPart())) {
+                    if (!jars.contains(jar)) {
+                        jars.add(jar);
                     }
                 }
             }
@@ -1315,85 +1515,53 @@ public class JNLPClassLoader extends URLClassLoader {
                 // transfer the Jars
                 waitForJars(jars);
 
-                for (JARDesc jar : jars) {
+                // read the jars in parallel, the classloader is changed
+                // only afterwards, in the order of the jars
+                final List<Future<ScannedJar>> scans = scanJars(jars);
+
+                for (int i = 0; i < jars.size(); i++) {
+                    final JARDesc jar = jars.get(i);
                     available.remove(jar);
 
                     // add jar
                     File localFile = tracker.getCacheFile(jar.getLocation());
                     try {
                         URL location = jar.getLocation(); // non-cacheable, use source location
+                        ScannedJar scanned = null;
                         if (localFile != null) {
                             // TODO: Should be toURI().toURL()
                             location = localFile.toURL(); // cached file
-                            // This is really not the best way.. but we need some way for
-                            // PluginAppletViewer::getCachedImageRef() to check if the image
-                            // is available locally, and it cannot use getResources() because
-                            // that prefetches the resource, which confuses MediaTracker.waitForAll()
-                            // which does a wait(), waiting for notification (presumably
-                            // thrown after a resource is fetched). This bug manifests itself
-                            // particularly when using The FileManager applet from Webmin.
-                            try (JarFile jarFile = new JarFile(localFile)) {
-                                for (JarEntry je : Collections.list(jarFile.entries())) {
-
-                                    // another jar in my jar? it is more likely than you think
-                                    if (je.getName().endsWith(".jar")) {
-                                        // We need to extract that jar so that it can be loaded
-                                        // (inline loading with "jar:..!/..." path will not work
-                                        // with standard classloader methods)
-
-                                        String extractedJarLocation = localFile + ".nested/" + je.getName();
-                                        File parentDir = new File(extractedJarLocation).getParentFile();
-                                        if (!parentDir.isDirectory() && !parentDir.mkdirs()) {
-                                            throw new RuntimeException(R("RNestedJarExtration"));
-                                        }
-                                        FileOutputStream extractedJar = new FileOutputStream(extractedJarLocation);
-                                        InputStream is = jarFile.getInputStream(je);
-
-                                        byte[] bytes = new byte[1024];
-                                        int read = is.read(bytes);
-                                        int fileSize = read;
-                                        while (read > 0) {
-                                            extractedJar.write(bytes, 0, read);
-                                            read = is.read(bytes);
-                                            fileSize += read;
-                                        }
-
-                                        is.close();
-                                        extractedJar.close();
-
-                                        // 0 byte file? skip
-                                        if (fileSize <= 0) {
-                                            continue;
-                                        }
-
-                                        tracker.addResource(new File(extractedJarLocation).toURL(), null, null, null);
-
-                                        URL codebase = file.getCodeBase();
-                                        if (codebase == null) {
-                                            //FIXME: codebase should be the codebase of the Main Jar not
-                                            //the location. Although, it still works in the current state.
-                                            codebase = file.getResources().getMainJAR().getLocation();
-                                        }
-
-                                        final SecurityDesc jarSecurity = securityDelegate.getJarPermissions(codebase);
-
-                                        try {
-                                            URL fileURL = new URL("file://" + extractedJarLocation);
-                                            // there is no remote URL for this, so lets fake one
-                                            URL fakeRemote = new URL(jar.getLocation().toString() + "!" + je.getName());
-                                            CachedJarFileCallback.getInstance().addMapping(fakeRemote, fileURL);
-                                            addURL(fakeRemote);
-
-                                            jarLocationSecurityMap.put(fakeRemote, jarSecurity);
-
-                                        } catch (MalformedURLException mfue) {
-                                            LOG.error("Unable to add extracted nested jar to classpath", mfue);
-                                        }
-                                    }
-
-                                    jarEntries.add(je.getName());
+                            scanned = getScannedJar(scans.get(i));
+
+                            for (String nestedJar : scanned.nestedJars) {
+                                String extractedJarLocation = localFile + ".nested/" + nestedJar;
+                                tracker.addResource(new File(extractedJarLocation).toURL(), null, null, null);
+
+                                URL codebase = file.getCodeBase();
+                                if (codebase == null) {
+                                    //FIXME: codebase should be the codebase of the Main Jar not
+                                    //the location. Although, it still works in the current state.
+                                    codebase = file.getResources().getMainJAR().getLocation();
+                                }
+
+                                final SecurityDesc jarSecurity = securityDelegate.getJarPermissions(codebase);
+
+                                try {
+                                    URL fileURL = new URL("file://" + extractedJarLocation);
+                                    // there is no remote URL for this, so lets fake one
+                                    URL fakeRemote = new URL(jar.getLocation().toString() + "!" + nestedJar);
+                                    CachedJarFileCallback.getInstance().addMapping(fakeRemote, fileURL);
+                                    addURL(fakeRemote);
+
+                                    putJarSecurity(fakeRemote, jarSecurity);
+
+                                } catch (MalformedURLException mfue) {
+                                    LOG.error("Unable to add extracted nested jar to classpath", mfue);
                                 }
                             }
+
+                            jarEntries.addAll(scanned.jarEntries);
+                            packageIndex.addActivatedJar(jar, localFile, scanned.entryNames);
                         }
 
                         addURL(jar.getLocation());
@@ -1403,21 +1571,10 @@ public class JNLPClassLoader extends URLClassLoader {
                         if (localFile != null) {
                             CachedJarFileCallback.getInstance().addMapping(jar.getLocation(), localFile.toURI().toURL());
 
-                            try (JarFile jarFile = new JarFile(localFile.getAbsolutePath())) {
-                                Manifest mf = jarFile.getManifest();
-
-                                // Only check classpath if this is the plugin and there is no jnlp_href usage.
-                                // Note that this is different from proprietary plugin behaviour.
-                                // If jnlp_href is used, the app should be treated similarly to when
-                                // it is run from javaws as a webstart.
-                                if (file instanceof PluginBridge && !((PluginBridge) file).useJNLPHref()) {
-                                    classpaths.addAll(getClassPathsFromManifest(mf, jar.getLocation().getPath()));
-                                }
+                            classpaths.addAll(scanned.classpaths);
 
-                                JarIndexAccess index = JarIndexAccess.getJarIndex(jarFile);
-                                if (index != null) {
-                                    jarIndexes.add(index);
-                                }
+                            if (scanned.index != null) {
+                                jarIndexes.add(scanned.index);
                             }
                         } else {
                             CachedJarFileCallback.getInstance().addMapping(jar.getLocation(), jar.getLocation());
@@ -1439,6 +1596,144 @@ public class JNLPClassLoader extends URLClassLoader {
         AccessController.doPrivileged(activate, acc);
     }
 
+    /**
+     * Content of a cached jar which is needed to activate it.
+     */
+    private static class ScannedJar {
+
+        /** all entries of the jar */
+        private final List<String> entryNames = new ArrayList<>();
+        /** entries available locally, see {@link #resourceAvailableLocally(String)} */
+        private final List<String> jarEntries = new ArrayList<>();
+        /** entries of the nested jars which were extracted */
+        private final List<String> nestedJars = new ArrayList<>();
+        /** Class-Path entries of the manifest, if they are used */
+        private final Set<String> classpaths = new HashSet<>();
+        private JarIndexAccess index;
+    }
+
+    /**
+     * Starts reading the cached jars. Several jars are read in parallel,
+     * each one with the permissions of this classloader.
+     *
+     * @return for each jar, its content or null if it is not cached
+     */
+    private List<Future<ScannedJar>> scanJars(final List<JARDesc> jars) {
+        final List<Future<ScannedJar>> result = new ArrayList<>();
+        for (final JARDesc jar : jars) {
+            final File localFile = tracker.getCacheFile(jar.getLocation());
+            if (localFile == null) {
+                result.add(null);
+                continue;
+            }
+            final Callable<ScannedJar> scan = new Callable<ScannedJar>() {
+                @Override
+                public ScannedJar call() throws Exception {
+                    return AccessController.doPrivileged(new PrivilegedExceptionAction<ScannedJar>() {
+                        @Override
+                        public ScannedJar run() throws IOException {
+                            return scanJar(jar, localFile);
+                        }
+                    }, acc);
+                }
+            };
+            if (jars.size() == 1) {
+                final FutureTask<ScannedJar> task = new FutureTask<>(scan);
+                task.run();
+                result.add(task);
+            } else {
+                result.add(CachedDaemonThreadPoolProvider.DAEMON_THREAD_POOL.submit(scan));
+            }
+        }
+        return result;
+    }
+
+    private static ScannedJar getScannedJar(Future<ScannedJar> scan) throws Exception {
+        try {
+            return scan.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof PrivilegedActionException) {
+                cause = ((PrivilegedActionException) cause).getException();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads the entries of a cached jar, extracts its nested jars and reads
+     * its manifest and index. Does not change this classloader.
+     */
+    private ScannedJar scanJar(JARDesc jar, File localFile) throws IOException {
+        final ScannedJar scanned = new ScannedJar();
+        // This is really not the best way.. but we need some way for
+        // PluginAppletViewer::getCachedImageRef() to check if the image
+        // is available locally, and it cannot use getResources() because
+        // that prefetches the resource, which confuses MediaTracker.waitForAll()
+        // which does a wait(), waiting for notification (presumably
+        // thrown after a resource is fetched). This bug manifests itself
+        // particularly when using The FileManager applet from Webmin.
+
+        // the jar stays open for the classloader, see decrementLoaderUseCount()
+        final JarFile jarFile = holdJar(localFile);
+        for (JarEntry je : Collections.list(jarFile.entries())) {
+            scanned.entryNames.add(je.getName());
+
+            // another jar in my jar? it is more likely than you think
+            if (je.getName().endsWith(".jar")) {
+                // We need to extract that jar so that it can be loaded
+                // (inline loading with "jar:..!/..." path will not work
+                // with standard classloader methods)
+
+                String extractedJarLocation = localFile + ".nested/" + je.getName();
+                File parentDir = new File(extractedJarLocation).getParentFile();
+                if (!parentDir.isDirectory() && !parentDir.mkdirs()) {
+                    throw new RuntimeException(R("RNestedJarExtration"));
+                }
+                FileOutputStream extractedJar = new FileOutputStream(extractedJarLocation);
+                InputStream is = jarFile.getInputStream(je);
+
+                byte[] bytes = new byte[1024];
+                int read = is.read(bytes);
+                int fileSize = read;
+                while (read > 0) {
+                    extractedJar.write(bytes, 0, read);
+                    read = is.read(bytes);
+                    fileSize += read;
+                }
+
+                is.close();
+                extractedJar.close();
+
+                // 0 byte file? skip
+                if (fileSize <= 0) {
+                    continue;
+                }
+
+                scanned.nestedJars.add(je.getName());
+            }
+
+            scanned.jarEntries.add(je.getName());
+        }
+
+        // Only check classpath if this is the plugin and there is no jnlp_href usage.
+        // Note that this is different from proprietary plugin behaviour.
+        // If jnlp_href is used, the app should be treated similarly to when
+        // it is run from javaws as a webstart.
+        if (file instanceof PluginBridge && !((PluginBridge) file).useJNLPHref()) {
+            scanned.classpaths.addAll(getClassPathsFromManifest(jarFile.getManifest(), jar.getLocation().getPath()));
+        }
+
+        scanned.index = JarIndexAccess.getJarIndex(jarFile);
+        return scanned;
+    }
+
     /**
      * Return the absolute path to the native library.
      */
@@ -1541,9 +1836,10 @@ public class JNLPClassLoader extends URLClassLoader {
      * classloader instance when not needed is not in general a good idea
      * because it can and will lead to deadlock when multithreaded classloading
      * is in effect. The solution is to keep the fields thread safe on their
-     * own. This is accomplished by wrapping them in Collections.synchronized*
-     * to provide atomic add/remove operations, and synchronizing on them when
-     * iterating or performing multiple mutations. See bug report RH976833. On
+     * own. This is accomplished by using concurrent collections, whose
+     * iteration does not need any lock, and by loading each class under the
+     * lock of its name only, as this classloader is parallel capable.
+     * See bug report RH976833. On
      * some systems this bug will manifest itself as deadlock on every webpage
      * with more than one Java applet, potentially also causing the browser
      * process to hang. More information in the mailing list archives:
@@ -1554,6 +1850,27 @@ public class JNLPClassLoader extends URLClassLoader {
      */
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException {
+        // classes may be defined without adding a jar, e.g. by generated proxies
+        final Class<?> loaded = findLoadedClassAll(name);
+        if (loaded != null) {
+            return loaded;
+        }
+        // answer repeated misses without searching everything again
+        final long stamp = getLookupStamp();
+        if (classMisses.isKnownMiss(name, stamp)) {
+            throw new ClassNotFoundException(name);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            try {
+                return loadClassNotCached(name);
+            } catch (ClassNotFoundException ex) {
+                classMisses.recordMiss(name, stamp, getLookupStamp());
+                throw ex;
+            }
+        }
+    }
+
+    private Class<?> loadClassNotCached(String name) throws ClassNotFoundException {
         Class<?> result = findLoadedClassAll(name);
 
         // try parent classloader
@@ -1580,19 +1897,17 @@ public class JNLPClassLoader extends URLClassLoader {
 
                 // Look in 'Class-Path' as specified in the manifest file
                 try {
-                    // This field synchronized before iterating over it since it may
-                    // be shared data between threads
-                    synchronized (classpaths) {
-                        for (String classpath : classpaths) {
-                            JARDesc desc;
-                            try {
-                                URL jarUrl = new URL(file.getCodeBase(), classpath);
-                                desc = new JARDesc(jarUrl, null, null, false, true, false, true);
-                            } catch (MalformedURLException mfe) {
-                                throw new ClassNotFoundException(name, mfe);
-                            }
-                            addNewJar(desc);
+                    // This field is concurrent since it may be shared data
+                    // between threads
+                    for (String classpath : classpaths) {
+                        JARDesc desc;
+                        try {
+                            URL jarUrl = new URL(file.getCodeBase(), classpath);
+                            desc = new JARDesc(jarUrl, null, null, false, true, false, true);
+                        } catch (MalformedURLException mfe) {
+                            throw new ClassNotFoundException(name, mfe);
                         }
+                        addNewJar(desc);
                     }
 
                     result = loadClassExt(name);
@@ -1604,33 +1919,31 @@ public class JNLPClassLoader extends URLClassLoader {
                 // As a last resort, look in any available indexes
                 // Currently this loads jars directly from the site. We cannot cache it because this
                 // call is initiated from within the applet, which does not have disk read/write permissions
-                // This field synchronized before iterating over it since it may
-                // be shared data between threads
-                synchronized (jarIndexes) {
-                    for (JarIndexAccess index : jarIndexes) {
-                        // Non-generic code in sun.misc.JarIndex
-                        @SuppressWarnings("unchecked")
-                        LinkedList<String> jarList = index.get(name.replace('.', '/'));
-
-                        if (jarList != null) {
-                            for (String jarName : jarList) {
-                                JARDesc desc;
-                                try {
-                                    desc = new JARDesc(new URL(file.getCodeBase(), jarName),
-                                            null, null, false, true, false, true);
-                                } catch (MalformedURLException mfe) {
-                                    throw new ClassNotFoundException(name);
-                                }
-                                try {
-                                    addNewJar(desc);
-                                } catch (Exception e) {
-                                    LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, e);
-                                }
+                // This field is concurrent since it may be shared data
+                // between threads
+                for (JarIndexAccess index : jarIndexes) {
+                    // Non-generic code in sun.misc.JarIndex
+                    @SuppressWarnings("unchecked")
+                    LinkedList<String> jarList = index.get(name.replace('.', '/'));
+
+                    if (jarList != null) {
+                        for (String jarName : jarList) {
+                            JARDesc desc;
+                            try {
+                                desc = new JARDesc(new URL(file.getCodeBase(), jarName),
+                                        null, null, false, true, false, true);
+                            } catch (MalformedURLException mfe) {
+                                throw new ClassNotFoundException(name);
+                            }
+                            try {
+                                addNewJar(desc);
+                            } catch (Exception e) {
+                                LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, e);
                             }
-
-                            // If it still fails, let it error out
-                            result = loadClassExt(name);
                         }
+
+                        // If it still fails, let it error out
+                        result = loadClassExt(name);
                     }
                 }
             }
@@ -1653,7 +1966,7 @@ public class JNLPClassLoader extends URLClassLoader {
      * @param desc the JARDesc for the new jar
      */
     private void addNewJar(final JARDesc desc) {
-        this.addNewJar(desc, JNLPRuntime.getDefaultUpdatePolicy());
+        this.addNewJar(desc, JNLPRuntime.getDefaultUpdatePolicy(), DownloadPriority.WAITED);
     }
 
     /**
@@ -1661,15 +1974,17 @@ public class JNLPClassLoader extends URLClassLoader {
      *
      * @param desc the JARDesc for the new jar
      * @param updatePolicy the UpdatePolicy for the resource
+     * @param priority how urgent the download of the jar is
      */
-    private void addNewJar(final JARDesc desc, UpdatePolicy updatePolicy) {
+    private void addNewJar(final JARDesc desc, UpdatePolicy updatePolicy, DownloadPriority priority) {
 
         available.add(desc);
 
         tracker.addResource(desc.getLocation(),
                 desc.getVersion(),
                 null,
-                updatePolicy
+                updatePolicy,
+                priority
         );
 
         // Give read permissions to the cached jar file
@@ -1704,13 +2019,14 @@ public class JNLPClassLoader extends URLClassLoader {
             AccessController.doPrivileged(new PrivilegedExceptionAction<Void>() {
                 @Override
                 public Void run() throws Exception {
+                    holdJars(jars);
                     jcv.add(jars, tracker);
 
                     checkTrustWithUser();
 
                     final SecurityDesc security = securityDelegate.getJarPermissions(file.getCodeBase());
 
-                    jarLocationSecurityMap.put(remoteURL, security);
+                    putJarSecurity(remoteURL, security);
 
                     return null;
                 }
@@ -1733,25 +2049,28 @@ public class JNLPClassLoader extends URLClassLoader {
      */
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
+        // first the loader whose jars are known to contain the package, the
+        // others are tried after it in their usual order
+        final String packageName = JarPackageIndex.getPackageOfClass(name);
+        JNLPClassLoader owner = null;
         for (JNLPClassLoader loader : loaders) {
-            try {
-                if (loader == this) {
-                    final String fName = name;
-                    return AccessController.doPrivileged(
-                            new PrivilegedExceptionAction<Class<?>>() {
-                        @Override
-                        public Class<?> run() throws ClassNotFoundException {
-                            return JNLPClassLoader.super.findClass(fName);
-                        }
-                    }, getAccessControlContextForClassLoading());
-                } else {
-                    return loader.findClass(name);
+            if (loader.packageIndex.isActivated(packageName)) {
+                owner = loader;
+                break;
+            }
+        }
+        if (owner != null) {
+            Class<?> result = findClassIn(owner, name);
+            if (result != null) {
+                return result;
+            }
+        }
+        for (JNLPClassLoader loader : loaders) {
+            if (loader != owner) {
+                Class<?> result = findClassIn(loader, name);
+                if (result != null) {
+                    return result;
                 }
-            } catch (ClassNotFoundException | PrivilegedActionException ex) {
-            } catch (ClassFormatError cfe) {
-                LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, cfe);
-            } catch (NullJnlpFileException ex) {
-                throw new ClassNotFoundException(this.mainClass + " in main classloader ", ex);
             }
         }
 
@@ -1764,6 +2083,47 @@ public class JNLPClassLoader extends URLClassLoader {
         throw new ClassNotFoundException(name);
     }
 
+    /**
+     * Find the class in the given loader of this classloader.
+     *
+     * @return the class, or null if the loader does not have it
+     */
+    private Class<?> findClassIn(JNLPClassLoader loader, String name) throws ClassNotFoundException {
+        try {
+            if (loader == this) {
+                // extension classloaders are shared, so the class may be
+                // looked up through another classloader at the same time
+                synchronized (getClassLoadingLock(name)) {
+                    final Class<?> loaded = findLoadedClass(name);
+                    if (loaded != null) {
+                        return loaded;
+                    }
+                    final String fName = name;
+                    return AccessController.doPrivileged(
+                            new PrivilegedExceptionAction<Class<?>>() {
+                        @Override
+                        public Class<?> run() throws ClassNotFoundException {
+                            final Class<?> c = JNLPClassLoader.super.findClass(fName);
+                            lazyJarTrace.classDefined(c);
+                            if (fName.equals(mainClass)) {
+                                lazyJarTrace.mainClassDefined();
+                            }
+                            return c;
+                        }
+                    }, getAccessControlContextForClassLoading());
+                }
+            } else {
+                return loader.findClass(name);
+            }
+        } catch (ClassNotFoundException | PrivilegedActionException ex) {
+        } catch (ClassFormatError cfe) {
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, cfe);
+        } catch (NullJnlpFileException ex) {
+            throw new ClassNotFoundException(this.mainClass + " in main classloader ", ex);
+        }
+        return null;
+    }
+
     /**
      * Search for the class by incrementally adding resources to the classloader
      * and its extension classloaders until the resource is found.
@@ -1778,6 +2138,24 @@ public class JNLPClassLoader extends URLClassLoader {
         } catch (ClassNotFoundException ex) {
         }
 
+        // add the parts known to contain the package
+        while (true) {
+            JNLPClassLoader addedTo;
+            try {
+                addedTo = addResourceForPackage(JarPackageIndex.getPackageOfClass(name), name);
+            } catch (LaunchException e) {
+                // never thrown here, see below
+                throw new IllegalStateException(e);
+            }
+            if (addedTo == null) {
+                break;
+            }
+            try {
+                return addedTo.findClass(name);
+            } catch (ClassNotFoundException ex) {
+            }
+        }
+
         // add resources until found
         while (true) {
             JNLPClassLoader addedTo = null;
@@ -1838,10 +2216,20 @@ public class JNLPClassLoader extends URLClassLoader {
      */
     @Override
     public Enumeration<URL> findResources(String name) throws IOException {
+        final long stamp = getLookupStamp();
+        if (resourceMisses.isKnownMiss(name, stamp)) {
+            return Collections.emptyEnumeration();
+        }
+
         Enumeration<URL> lresources = findResourcesBySearching(name);
 
         try {
-            // if not found, load all lazy resources; repeat search
+            // if not found, load the lazy resources known to contain it
+            final String packageName = JarPackageIndex.getPackageOfResource(name);
+            while (!lresources.hasMoreElements() && addResourceForPackage(packageName, null) != null) {
+                lresources = findResourcesBySearching(name);
+            }
+            // if still not found, load all lazy resources; repeat search
             while (!lresources.hasMoreElements() && addNextResource() != null) {
                 lresources = findResourcesBySearching(name);
             }
@@ -1849,9 +2237,39 @@ public class JNLPClassLoader extends URLClassLoader {
             LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, le);
         }
 
+        if (!lresources.hasMoreElements()) {
+            resourceMisses.recordMiss(name, stamp, getLookupStamp());
+        }
         return lresources;
     }
 
+    /**
+     * Returns a value which changes whenever jars are added to this
+     * classloader, its extension classloaders or its codebase loader.
+     *
+     * @return the stamp of the current jars
+     */
+    long getLookupStamp() {
+        long stamp = addedJarsCount.get();
+        final JNLPClassLoader[] current = loaders;
+        if (current != null) {
+            for (int i = 1; i < current.length; i++) {
+                stamp += current[i].getLookupStamp();
+            }
+        }
+        return stamp;
+    }
+
+    @Override
+    protected void addURL(URL url) {
+        // urls already there are ignored and must not make misses stale
+        final int before = getURLs().length;
+        super.addURL(url);
+        if (getURLs().length != before) {
+            addedJarsCount.incrementAndGet();
+        }
+    }
+
     /**
      * Find the resources in this, the parent, or the extension class loaders.
      */
@@ -1953,9 +2371,65 @@ public class JNLPClassLoader extends URLClassLoader {
             return null;
         }
 
-        // add jar
+        // add jar, another thread may have taken the last one meanwhile
+        final Iterator<JARDesc> next = available.iterator();
+        if (!next.hasNext()) {
+            return addNextResource();
+        }
         List<JARDesc> jars = new ArrayList<>();
-        jars.add(available.get(0));
+        jars.add(next.next());
+
+        fillInPartJars(jars);
+        checkForMain(jars);
+        activateJars(jars);
+
+        return this;
+    }
+
+    /**
+     * Adds the next unused resource known to contain the package, together
+     * with the rest of its part. A jar is known to contain the package if the
+     * JNLP file maps the package to its part, or if the package index
+     * recorded when the jar was used before says so.
+     *
+     * @param packageName package in the form of jar entry directory
+     * @param className the class looked for, or null when looking for a resource
+     * @return the classloader that resources were added to, or null
+     * @throws LaunchException Thrown if the signed JNLP file, within the main
+     * jar, fails to be verified or does not match
+     */
+    protected JNLPClassLoader addResourceForPackage(String packageName, String className) throws LaunchException {
+        final PackageDesc[] packages = (className == null || resources == null) ? new PackageDesc[0] : resources.getPackages(className);
+
+        JARDesc found = null;
+        for (JARDesc jar : available) {
+            for (PackageDesc p : packages) {
+                if (p.getPart() != null && p.getPart().equals(jar.getPart())) {
+                    found = jar;
+                    break;
+                }
+            }
+            if (found == null && packageIndex.isKnownToContain(jar, packageName)) {
+                found = jar;
+            }
+            if (found != null) {
+                break;
+            }
+        }
+
+        if (found == null) {
+            for (int i = 1; i < loaders.length; i++) {
+                JNLPClassLoader result = loaders[i].addResourceForPackage(packageName, className);
+
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        List<JARDesc> jars = new ArrayList<>();
+        jars.add(found);
 
         fillInPartJars(jars);
         checkForMain(jars);
@@ -2035,21 +2509,31 @@ public class JNLPClassLoader extends URLClassLoader {
      * @param source the origin (remote) url of the code
      * @return The SecurityDescriptor for that source
      */
-    protected SecurityDesc getCodeSourceSecurity(URL source) {
+    protected SecurityDesc getCodeSourceSecurity(final URL source) {
         SecurityDesc sec = jarLocationSecurityMap.get(source);
-        synchronized (alreadyTried) {
-            if (sec == null && !alreadyTried.contains(source)) {
-                alreadyTried.add(source);
-                //try to load the jar which is requesting the permissions, but was NOT downloaded by standard way
-                LOG.info("Application is trying to get permissions for {}, which was not added by standard way. Trying to download and verify!", source.toString());
-                try {
-                    JARDesc des = new JARDesc(source, null, null, false, false, false, false);
-                    addNewJar(des);
-                    sec = jarLocationSecurityMap.get(source);
-                } catch (Throwable t) {
-                    LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, t);
-                    sec = null;
+        if (sec == null) {
+            final SecurityTry attempt = new SecurityTry(new Callable<SecurityDesc>() {
+                @Override
+                public SecurityDesc call() {
+                    //try to load the jar which is requesting the permissions, but was NOT downloaded by standard way
+                    LOG.info("Application is trying to get permissions for {}, which was not added by standard way. Trying to download and verify!", source.toString());
+                    try {
+                        JARDesc des = new JARDesc(source, null, null, false, false, false, false);
+                        addNewJar(des);
+                        return jarLocationSecurityMap.get(source);
+                    } catch (Throwable t) {
+                        LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, t);
+                        return null;
+                    }
                 }
+            });
+            final SecurityTry running = alreadyTried.putIfAbsent(source, attempt);
+            if (running == null) {
+                attempt.run();
+                sec = attempt.getResult();
+            } else if (running.owner != Thread.currentThread()) {
+                // the jar may be still added by another thread, a nested call of the adding thread gets null
+                sec = running.getResult();
             }
         }
         if (sec == null) {
@@ -2058,6 +2542,35 @@ public class JNLPClassLoader extends URLClassLoader {
         return sec;
     }
 
+    /**
+     * Single try to add the jar of a code source which was not added by
+     * standard way, run by the thread which created it.
+     */
+    private static class SecurityTry extends FutureTask<SecurityDesc> {
+
+        private final Thread owner = Thread.currentThread();
+
+        SecurityTry(Callable<SecurityDesc> callable) {
+            super(callable);
+        }
+
+        /**
+         * @return the security descriptor of the code source, or null if
+         * the jar could not be added
+         */
+        SecurityDesc getResult() {
+            try {
+                return get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException ex) {
+                LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+                return null;
+            }
+        }
+    }
+
     /**
      * Merges the code source/security descriptor mapping from another loader
      *
@@ -2067,7 +2580,9 @@ public class JNLPClassLoader extends URLClassLoader {
     private void merge(JNLPClassLoader extLoader) {
 
         try {
-            System.getSecurityManager().checkPermission(new AllPermission());
+            if (System.getSecurityManager() != null) {
+                System.getSecurityManager().checkPermission(new AllPermission());
+            }
         } catch (SecurityException se) {
             throw new SecurityException("JNLPClassLoader() may only be called from trusted sources!");
         }
@@ -2086,10 +2601,16 @@ public class JNLPClassLoader extends URLClassLoader {
         }
 
         // security descriptors
-        synchronized (jarLocationSecurityMap) {
-            for (URL key : extLoader.jarLocationSecurityMap.keySet()) {
-                jarLocationSecurityMap.put(key, extLoader.jarLocationSecurityMap.get(key));
-            }
+        jarLocationSecurityMap.putAll(extLoader.jarLocationSecurityMap);
+    }
+
+    /**
+     * Records the security descriptor of a code source. A null descriptor is
+     * not stored, which is the same as an unknown code source.
+     */
+    private void putJarSecurity(URL location, SecurityDesc security) {
+        if (security != null) {
+            jarLocationSecurityMap.put(location, security);
         }
     }
 
@@ -2116,6 +2637,7 @@ public class JNLPClassLoader extends URLClassLoader {
         } else {
             codeBaseLoader.addURL(u);
         }
+        addedJarsCount.incrementAndGet();
     }
 
     /**
@@ -2225,7 +2747,7 @@ public class JNLPClassLoader extends URLClassLoader {
         for (JARDesc eachJar : jars) {
             LOG.info("Downloading and initializing jar: {}", eachJar.getLocation().toString());
 
-            this.addNewJar(eachJar, UpdatePolicy.FORCE);
+            this.addNewJar(eachJar, UpdatePolicy.FORCE, DownloadPriority.BOOSTED);
         }
     }
 
@@ -2260,7 +2782,7 @@ public class JNLPClassLoader extends URLClassLoader {
                 JARDesc jarToCache = new JARDesc(ref, resourceVersion, null, false, true, false, true);
                 LOG.info("Downloading and initializing jar: {}", ref.toString());
 
-                foundLoader.addNewJar(jarToCache, UpdatePolicy.FORCE);
+                foundLoader.addNewJar(jarToCache, UpdatePolicy.FORCE, DownloadPriority.BOOSTED);
 
             } else if (action == DownloadAction.REMOVE_FROM_CACHE) {
                 JARDesc[] jarToRemove = {new JARDesc(ref, resourceVersion, null, false, true, false, true)};
@@ -2295,6 +2817,12 @@ public class JNLPClassLoader extends URLClassLoader {
 
             if (useCount <= 0) {
                 uniqueKeyToLoader.remove(uniqueKey);
+
+                // let the pool close the jars nobody else uses
+                for (JarFile jarFile : pooledJarFiles.values()) {
+                    StreamUtils.closeSilently(jarFile);
+                }
+                pooledJarFiles.clear();
             }
         }
     }
@@ -2334,11 +2862,9 @@ public class JNLPClassLoader extends URLClassLoader {
         }
 
         // Permissions for all remote hosting urls
-        synchronized (jarLocationSecurityMap) {
-            for (URL u : jarLocationSecurityMap.keySet()) {
-                permissions.add(new SocketPermission(UrlUtils.getHostAndPort(u),
-                        "connect, accept"));
-            }
+        for (URL u : jarLocationSecurityMap.keySet()) {
+            permissions.add(new SocketPermission(UrlUtils.getHostAndPort(u),
+                    "connect, accept"));
         }
 
         // Permissions for codebase urls (if there is a loader)
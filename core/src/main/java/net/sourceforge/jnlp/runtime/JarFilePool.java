@@ -0,0 +1,229 @@
+package net.sourceforge.jnlp.runtime;
+
+import net.sourceforge.jnlp.util.JarFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Process wide pool of open cached jar files, so the central directory of a
+ * jar is read once, however many class loaders and checks use the jar.
+ * <p>
+ * The jars are reference counted. Each {@link #acquire(File)} returns the
+ * shared open jar and takes one reference, closing the returned jar releases
+ * that reference. The jar is really closed when the last reference is
+ * released. A {@link JNLPClassLoader} takes a reference to each of its jars
+ * before checking it and holds it until its use count drops to zero, so the
+ * checks, the verification and the class loading all read the same open jar.
+ * </p>
+ * <p>
+ * If the file was replaced since it was opened, a new jar is opened for
+ * further acquirers, while the old one stays open for its holders.
+ * </p>
+ */
+public final class JarFilePool {
+
+    private static final JarFilePool INSTANCE = new JarFilePool();
+
+    public static JarFilePool getInstance() {
+        return INSTANCE;
+    }
+
+    /** open jars by absolute path, guarded by this */
+    private final Map<String, PooledJarFile> open = new HashMap<>();
+
+    JarFilePool() {
+    }
+
+    /**
+     * Returns the open jar of the file, opening it if nobody holds it.
+     *
+     * @param file the jar file
+     * @return the shared jar, which must be closed exactly once by the caller
+     * @throws IOException if the jar can not be opened
+     */
+    public JarFile acquire(File file) throws IOException {
+        final String key = file.getAbsolutePath();
+        synchronized (this) {
+            final PooledJarFile jar = open.get(key);
+            if (jar != null && jar.isCurrent()) {
+                jar.references++;
+                return jar;
+            }
+        }
+
+        // open without holding the pool, jars are opened in parallel
+        final PooledJarFile opened = new PooledJarFile(file, this);
+        synchronized (this) {
+            final PooledJarFile jar = open.get(key);
+            if (jar != null && jar.isCurrent()) {
+                jar.references++;
+                opened.references = 0;
+                opened.closeJar();
+                return jar;
+            }
+            open.put(key, opened);
+            return opened;
+        }
+    }
+
+    /**
+     * Returns a view of the open jar of the file for the jar protocol. The
+     * entries are read from the pooled jar, the manifest is a copy without
+     * Class-Path, so the manifest of the pooled jar is left as it is.
+     *
+     * @param file the jar file
+     * @return the view, which holds one reference until it is closed
+     * @throws IOException if the jar can not be opened
+     */
+    java.util.jar.JarFile acquireWithoutClassPath(File file) throws IOException {
+        final JarFile pooled = acquire(file);
+        try {
+            return new JarFileView(file, pooled);
+        } catch (IOException | RuntimeException ex) {
+            pooled.close();
+            throw ex;
+        }
+    }
+
+    private void release(PooledJarFile jar) throws IOException {
+        synchronized (this) {
+            if (jar.references <= 0) {
+                return;
+            }
+            jar.references--;
+            if (jar.references > 0) {
+                return;
+            }
+            if (open.get(jar.key) == jar) {
+                open.remove(jar.key);
+            }
+        }
+        jar.closeJar();
+    }
+
+    /**
+     * @return number of jars currently open in the pool
+     */
+    synchronized int size() {
+        return open.size();
+    }
+
+    private static final class PooledJarFile extends JarFile {
+
+        private final JarFilePool pool;
+        private final String key;
+        private final long lastModified;
+        private final long length;
+
+        /** guarded by the pool */
+        private int references = 1;
+
+        private PooledJarFile(File file, JarFilePool pool) throws IOException {
+            super(file);
+            this.pool = pool;
+            this.key = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        private boolean isCurrent() {
+            final File file = new File(key);
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+
+        /**
+         * Releases one reference to the jar.
+         */
+        @Override
+        public void close() throws IOException {
+            pool.release(this);
+        }
+
+        private void closeJar() throws IOException {
+            super.close();
+        }
+    }
+
+    /**
+     * Jar handed to the jar protocol. Its own zip file shares the open file
+     * and central directory of the pooled jar within the JDK, all entries are
+     * read through the pooled jar.
+     */
+    private static final class JarFileView extends java.util.jar.JarFile {
+
+        private final JarFile pooled;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Manifest manifest;
+
+        private JarFileView(File file, JarFile pooled) throws IOException {
+            super(file);
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Manifest getManifest() throws IOException {
+            if (manifest == null) {
+                final Manifest original = pooled.getManifest();
+                if (original == null) {
+                    return null;
+                }
+                // Blank out the class-path because:
+                // 1) Web Start does not support it
+                // 2) For the plug-in, we want to cache files from class-path so we do it manually
+                final Manifest copy = new Manifest(original);
+                copy.getMainAttributes().remove(Attributes.Name.CLASS_PATH);
+                manifest = copy;
+            }
+            return manifest;
+        }
+
+        @Override
+        public JarEntry getJarEntry(String name) {
+            return pooled.getJarEntry(name);
+        }
+
+        @Override
+        public ZipEntry getEntry(String name) {
+            return pooled.getEntry(name);
+        }
+
+        @Override
+        public Enumeration<JarEntry> entries() {
+            return pooled.entries();
+        }
+
+        @Override
+        public int size() {
+            return pooled.size();
+        }
+
+        @Override
+        public InputStream getInputStream(ZipEntry ze) throws IOException {
+            return pooled.getInputStream(ze);
+        }
+
+        /**
+         * Releases the reference to the pooled jar.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    super.close();
+                } finally {
+                    pooled.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package net.sourceforge.jnlp.runtime;
+
+import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
+import net.sourceforge.jnlp.JARDesc;
+import net.sourceforge.jnlp.cache.CacheEntry;
+import net.sourceforge.jnlp.cache.CacheUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.URL;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the packages contained in the jars of a class loader, so a class
+ * or resource can be looked up in the jar which contains its package instead
+ * of trying every jar until one of them does not throw
+ * {@link ClassNotFoundException}.
+ * <p>
+ * The packages of a jar are taken from its central directory when the jar is
+ * activated, and are persisted in its cache entry. In later runs, the lazy
+ * jars which were used before are therefore known before they are activated,
+ * and only the part which contains the requested package has to be loaded.
+ * </p>
+ * <p>
+ * Packages are stored in the form of jar entry directories, e.g.
+ * {@code org/example} for the class {@code org.example.Main}.
+ * </p>
+ */
+class JarPackageIndex {
+
+    private final static Logger LOG = LoggerFactory.getLogger(JarPackageIndex.class);
+
+    private static final char STAMP_SEPARATOR = ':';
+    private static final String PACKAGE_SEPARATOR = ",";
+
+    /** packages of the jars, empty for jars which are known not to be indexed */
+    private final ConcurrentHashMap<URL, Set<String>> packagesByJar = new ConcurrentHashMap<>();
+
+    /** packages of the jars already activated in the class loader */
+    private final Set<String> activatedPackages = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * @param className fully qualified name of a class
+     * @return the package of the class, as directory of its jar entry
+     */
+    static String getPackageOfClass(String className) {
+        int i = className.lastIndexOf('.');
+        return i < 0 ? "" : className.substring(0, i).replace('.', '/');
+    }
+
+    /**
+     * @param resourceName name of a resource, as used by {@link ClassLoader#getResource(String)}
+     * @return the directory of the resource
+     */
+    static String getPackageOfResource(String resourceName) {
+        int i = resourceName.lastIndexOf('/');
+        return i < 0 ? "" : resourceName.substring(0, i);
+    }
+
+    /**
+     * Records the packages of a jar which was added to the class loader, and
+     * persists them in its cache entry if they are not there yet.
+     *
+     * @param jar the activated jar
+     * @param localFile the cached jar file, or null if the jar is not cached
+     * @param entryNames names of all entries of the jar
+     */
+    void addActivatedJar(JARDesc jar, File localFile, Collection<String> entryNames) {
+        final Set<String> packages = new HashSet<>();
+        for (String entryName : entryNames) {
+            if (!entryName.endsWith("/")) {
+                packages.add(getPackageOfResource(entryName));
+            }
+        }
+        packagesByJar.put(jar.getLocation(), packages);
+        activatedPackages.addAll(packages);
+
+        if (localFile == null || !CacheUtil.isCacheable(jar.getLocation(), jar.getVersion())) {
+            return;
+        }
+        try {
+            CacheUtil.storePackageIndex(jar.getLocation(), jar.getVersion(), encode(localFile.lastModified(), packages));
+        } catch (Exception ex) {
+            // the index is an optimization only
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+        }
+    }
+
+    /**
+     * @param packageName package in the form of jar entry directory
+     * @return whether an activated jar contains the package
+     */
+    boolean isActivated(String packageName) {
+        return activatedPackages.contains(packageName);
+    }
+
+    /**
+     * @param jar jar not activated yet
+     * @param packageName package in the form of jar entry directory
+     * @return true if the jar is known to contain the package, false if it
+     * does not or if its content is not known
+     */
+    boolean isKnownToContain(JARDesc jar, String packageName) {
+        Set<String> packages = packagesByJar.get(jar.getLocation());
+        if (packages == null) {
+            packages = load(jar);
+            packagesByJar.putIfAbsent(jar.getLocation(), packages);
+        }
+        return packages.contains(packageName);
+    }
+
+    private static Set<String> load(final JARDesc jar) {
+        // class loading may run with permissions of the application
+        return AccessController.doPrivileged(new PrivilegedAction<Set<String>>() {
+            @Override
+            public Set<String> run() {
+                return loadPrivileged(jar);
+            }
+        });
+    }
+
+    private static Set<String> loadPrivileged(JARDesc jar) {
+        try {
+            // a lazy jar which is not downloaded yet has no index
+            if (!CacheUtil.isCacheable(jar.getLocation(), jar.getVersion())
+                    || !CacheUtil.isCached(jar.getLocation(), jar.getVersion())) {
+                return Collections.emptySet();
+            }
+            final CacheEntry entry = new CacheEntry(jar.getLocation(), jar.getVersion());
+            final File localFile = CacheUtil.getCacheFile(jar.getLocation(), jar.getVersion());
+            return decode(entry.getPackageIndex(), localFile == null ? 0 : localFile.lastModified());
+        } catch (Exception ex) {
+            LOG.debug("No package index of {}: {}", jar.getLocation(), ex.toString());
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * The packages are prefixed by the modification time of the cached jar,
+     * so an index of a jar which was replaced is never used.
+     */
+    static String encode(long stamp, Set<String> packages) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(stamp).append(STAMP_SEPARATOR);
+        boolean first = true;
+        for (String p : new TreeSet<>(packages)) {
+            if (!first) {
+                sb.append(PACKAGE_SEPARATOR);
+            }
+            sb.append(p);
+            first = false;
+        }
+        return sb.toString();
+    }
+
+    static Set<String> decode(String index, long stamp) {
+        if (index == null) {
+            return Collections.emptySet();
+        }
+        int i = index.indexOf(STAMP_SEPARATOR);
+        if (i < 0 || !index.substring(0, i).equals(Long.toString(stamp))) {
+            return Collections.emptySet();
+        }
+        Set<String> packages = new HashSet<>();
+        for (String p : index.substring(i + 1).split(PACKAGE_SEPARATOR, -1)) {
+            packages.add(p);
+        }
+        return packages;
+    }
+}
@@ -0,0 +1,214 @@
+package net.sourceforge.jnlp.runtime;
+
+import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
+import net.sourceforge.jnlp.JARDesc;
+import net.sourceforge.jnlp.cache.CacheEntry;
+import net.sourceforge.jnlp.cache.CacheUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.security.AccessController;
+import java.security.CodeSource;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Trace of the lazy jars an application really used, recorded in the cache
+ * entry of its main jar.
+ * <p>
+ * A lazy jar is used when a class is defined from it. The jars used in the
+ * previous run are downloaded with the priority of the eager jars in the next
+ * run, instead of being prefetched after them, see
+ * {@link JNLPClassLoader#initializeResources()}. Each run replaces the trace
+ * once its main class is defined, and again whenever it uses another lazy
+ * jar, so a run which uses no lazy jar clears the trace.
+ * </p>
+ */
+class LazyJarTrace {
+
+    private final static Logger LOG = LoggerFactory.getLogger(LazyJarTrace.class);
+
+    private static final String SEPARATOR = " ";
+
+    private final Executor executor;
+
+    /** the jar whose cache entry holds the trace, null if not cacheable */
+    private volatile JARDesc mainJar;
+
+    /** lazy jars used in the previous run */
+    private volatile Set<String> previous = Collections.emptySet();
+
+    /** lazy jars of the application */
+    private final Set<String> lazyJars = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** lazy jars used in this run */
+    private final Set<String> used = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** the trace changed since it was written */
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    /** a writer is scheduled or running, there is never more than one */
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+
+    /** the trace of the previous run was replaced */
+    private final AtomicBoolean replaced = new AtomicBoolean(false);
+
+    LazyJarTrace(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Reads the trace of the previous run.
+     *
+     * @param mainJar the main jar of the application, may be null
+     * @param jars all jars of the application
+     */
+    void load(JARDesc mainJar, JARDesc[] jars) {
+        for (JARDesc jar : jars) {
+            if (jar.isLazy()) {
+                lazyJars.add(jar.getLocation().toString());
+            }
+        }
+        if (mainJar == null || !CacheUtil.isCacheable(mainJar.getLocation(), mainJar.getVersion())) {
+            return;
+        }
+        this.mainJar = mainJar;
+        this.previous = decode(new CacheEntry(mainJar.getLocation(), mainJar.getVersion()).getLazyJarTrace());
+    }
+
+    /**
+     * @param jars all jars of the application
+     * @return the lazy jars used in the previous run, together with the
+     * other jars of their parts
+     */
+    Set<JARDesc> getPreviouslyUsed(JARDesc[] jars) {
+        final Set<String> parts = new HashSet<>();
+        for (JARDesc jar : jars) {
+            if (jar.isLazy() && jar.getPart() != null && previous.contains(jar.getLocation().toString())) {
+                parts.add(jar.getPart());
+            }
+        }
+        final Set<JARDesc> result = new HashSet<>();
+        for (JARDesc jar : jars) {
+            if (jar.isLazy() && (previous.contains(jar.getLocation().toString()) || parts.contains(jar.getPart()))) {
+                result.add(jar);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records the jar the class was defined from, if it is a lazy jar.
+     * Callers need the permission to get the protection domain.
+     *
+     * @param c a class defined by the class loader
+     */
+    void classDefined(Class<?> c) {
+        if (lazyJars.isEmpty() || c.getProtectionDomain() == null) {
+            return;
+        }
+        final CodeSource source = c.getProtectionDomain().getCodeSource();
+        final URL location = source == null ? null : source.getLocation();
+        if (location == null) {
+            return;
+        }
+        final String jar = location.toString();
+        if (lazyJars.contains(jar) && used.add(jar)) {
+            LOG.debug("Lazy jar {} used", jar);
+            store();
+        }
+    }
+
+    /**
+     * Replaces the trace of the previous run by the lazy jars used so far,
+     * once the main class of the application is defined.
+     */
+    void mainClassDefined() {
+        if (!previous.isEmpty() && replaced.compareAndSet(false, true)) {
+            store();
+        }
+    }
+
+    /**
+     * @return the lazy jars used in this run
+     */
+    Set<String> getUsed() {
+        return Collections.unmodifiableSet(used);
+    }
+
+    /**
+     * Writes the trace in background. The writes are done one after the
+     * other by a single writer, which takes the changes arriving meanwhile
+     * along, so an older trace never overwrites a newer one.
+     */
+    private void store() {
+        final JARDesc jar = mainJar;
+        if (jar == null) {
+            return;
+        }
+        dirty.set(true);
+        if (!writing.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                do {
+                    while (dirty.getAndSet(false)) {
+                        write(jar, encode(used));
+                    }
+                    writing.set(false);
+                    // a change may have arrived after the last write but before the writer stopped
+                } while (dirty.get() && writing.compareAndSet(false, true));
+            }
+        });
+    }
+
+    /**
+     * @param jar the jar whose cache entry holds the trace
+     * @param trace the encoded trace
+     */
+    void write(final JARDesc jar, final String trace) {
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            @Override
+            public Void run() {
+                try {
+                    CacheUtil.storeLazyJarTrace(jar.getLocation(), jar.getVersion(), trace);
+                } catch (Exception ex) {
+                    // the trace is an optimization only
+                    LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+                }
+                return null;
+            }
+        });
+    }
+
+    static String encode(Set<String> jars) {
+        StringBuilder sb = new StringBuilder();
+        for (String jar : new TreeSet<>(jars)) {
+            if (sb.length() > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(jar);
+        }
+        return sb.toString();
+    }
+
+    static Set<String> decode(String trace) {
+        if (trace == null || trace.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        final Set<String> jars = new HashSet<>();
+        for (String jar : trace.trim().split(SEPARATOR + "+")) {
+            jars.add(jar);
+        }
+        return jars;
+    }
+}
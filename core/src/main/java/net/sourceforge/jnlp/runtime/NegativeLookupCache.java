@@ -0,0 +1,67 @@
+package net.sourceforge.jnlp.runtime;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers names of classes or resources which a class loader failed to
+ * find, so a repeated lookup of the same name - as done by frameworks probing
+ * for optional classes - does not walk all jars, manifest class paths, jar
+ * indexes and the codebase again.
+ * <p>
+ * Each miss is recorded together with a stamp describing the jars of the
+ * class loader at the time the lookup started. The stamp changes whenever
+ * jars are added, which makes all recorded misses stale at once. A miss is
+ * not recorded at all if jars were added while it was looked up.
+ * </p>
+ * <p>
+ * The number of recorded misses is bounded, arbitrary entries are dropped
+ * when the bound is reached.
+ * </p>
+ */
+class NegativeLookupCache {
+
+    static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Long> misses = new ConcurrentHashMap<>();
+
+    NegativeLookupCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    NegativeLookupCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param name name of the class or resource
+     * @param stamp the current stamp of the class loader
+     * @return true if the name was not found with the same jars before
+     */
+    boolean isKnownMiss(String name, long stamp) {
+        Long recorded = misses.get(name);
+        return recorded != null && recorded == stamp;
+    }
+
+    /**
+     * @param name name of the class or resource which was not found
+     * @param startStamp the stamp of the class loader when the lookup started
+     * @param endStamp the stamp of the class loader when the lookup ended
+     */
+    void recordMiss(String name, long startStamp, long endStamp) {
+        if (startStamp != endStamp) {
+            return;
+        }
+        Iterator<String> it = misses.keySet().iterator();
+        while (misses.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        misses.put(name, startStamp);
+    }
+
+    int size() {
+        return misses.size();
+    }
+}
@@ -29,8 +29,15 @@ import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
 import net.sourceforge.jnlp.JARDesc;
 import net.sourceforge.jnlp.JNLPFile;
 import net.sourceforge.jnlp.LaunchException;
+import net.sourceforge.jnlp.cache.CacheEntry;
+import net.sourceforge.jnlp.cache.CacheUtil;
+import net.sourceforge.jnlp.cache.CachedDaemonThreadPoolProvider;
+import net.sourceforge.jnlp.cache.IllegalResourceDescriptorException;
 import net.sourceforge.jnlp.cache.ResourceTracker;
+import net.sourceforge.jnlp.event.DownloadEvent;
+import net.sourceforge.jnlp.event.DownloadListener;
 import net.sourceforge.jnlp.runtime.JNLPClassLoader.SecurityDelegate;
+import net.sourceforge.jnlp.runtime.JarFilePool;
 import net.sourceforge.jnlp.security.AppVerifier;
 import net.sourceforge.jnlp.security.CertVerifier;
 import net.sourceforge.jnlp.security.CertificateUtils;
@@ -46,8 +53,12 @@ import sun.security.x509.NetscapeCertTypeExtension;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.AccessControlContext;
+import java.security.AccessController;
 import java.security.CodeSigner;
 import java.security.KeyStore;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
 import java.security.cert.CertPath;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
@@ -55,9 +66,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.jar.JarEntry;
 
 /**
@@ -83,10 +101,10 @@ public class JarCertVerifier implements CertVerifier {
     }
 
     /** All of the jar files that were verified for signing */
-    private final List<String> verifiedJars = new ArrayList<>();
+    private final Set<String> verifiedJars = new HashSet<>();
 
     /** All of the jar files that were not verified */
-    private final List<String> unverifiedJars = new ArrayList<>();
+    private final Set<String> unverifiedJars = new HashSet<>();
 
     /** The certificates used for jar verification linked to their respective information */
     private final Map<CertPath, CertInformation> certs = new HashMap<>();
@@ -97,6 +115,9 @@ public class JarCertVerifier implements CertVerifier {
     /** Absolute location to jars and the number of entries which are possibly signable */
     private final Map<String, Integer> jarSignableEntries = new HashMap<>();
 
+    /** Reads of jars started as soon as they were downloaded, by the absolute path of the jar */
+    private final Map<String, Future<VerifiedJar>> pendingReads = new ConcurrentHashMap<>();
+
     /** The application verifier to use by this instance */
     private final AppVerifier appVerifier;
 
@@ -199,6 +220,63 @@ public class JarCertVerifier implements CertVerifier {
         return certVerifier.allJarsSigned();
     }
 
+    /**
+     * Starts reading each of the jars as soon as the tracker downloaded it,
+     * while the other jars are still downloading. A later {@link #add} of
+     * the jars uses what was read.
+     *
+     * @param jars
+     *            The jars which are going to be verified.
+     * @param tracker
+     *            Resource tracker which downloads the jars.
+     */
+    public void readWhenDownloaded(List<JARDesc> jars, final ResourceTracker tracker) {
+        final AccessControlContext acc = AccessController.getContext();
+        final Set<JARDesc> remaining = Collections.newSetFromMap(new ConcurrentHashMap<JARDesc, Boolean>());
+        remaining.addAll(jars);
+        final DownloadListener listener = new DownloadListener() {
+            @Override
+            public void updateStarted(DownloadEvent downloadEvent) {
+            }
+
+            @Override
+            public void downloadStarted(DownloadEvent downloadEvent) {
+            }
+
+            @Override
+            public void downloadCompleted(DownloadEvent downloadEvent) {
+                readDownloaded(remaining, tracker, acc, this);
+            }
+        };
+        tracker.addDownloadListener(listener);
+        // some of the jars may have been downloaded already
+        readDownloaded(remaining, tracker, acc, listener);
+    }
+
+    private void readDownloaded(Set<JARDesc> remaining, ResourceTracker tracker, AccessControlContext acc, DownloadListener listener) {
+        for (JARDesc jar : remaining) {
+            try {
+                if (!tracker.checkResource(jar.getLocation()) || !remaining.remove(jar)) {
+                    continue;
+                }
+            } catch (IllegalResourceDescriptorException ex) {
+                // no longer tracked
+                remaining.remove(jar);
+                continue;
+            }
+            final File jarFile = tracker.getCacheFile(jar.getLocation());
+            if (jarFile != null) {
+                final FutureTask<VerifiedJar> read = new FutureTask<>(newRead(jar, jarFile, acc));
+                if (pendingReads.putIfAbsent(jarFile.getAbsolutePath(), read) == null) {
+                    CachedDaemonThreadPoolProvider.DAEMON_COMPUTATION_THREAD_POOL.execute(read);
+                }
+            }
+        }
+        if (remaining.isEmpty()) {
+            tracker.removeDownloadListener(listener);
+        }
+    }
+
     /**
      * Update the verifier to consider new jars when verifying.
      * 
@@ -227,55 +305,158 @@ public class JarCertVerifier implements CertVerifier {
     private void verifyJars(List<JARDesc> jars, ResourceTracker tracker)
             throws Exception {
 
+        final List<JARDesc> toRead = new ArrayList<>();
+        final List<File> jarFiles = new ArrayList<>();
+        final Set<String> localFiles = new HashSet<>();
         for (JARDesc jar : jars) {
+            File jarFile = tracker.getCacheFile(jar.getLocation());
 
-            try {
+            // some sort of resource download/cache error. Nothing to add
+            // in that case ... but don't fail here
+            if (jarFile == null) {
+                continue;
+            }
 
-                File jarFile = tracker.getCacheFile(jar.getLocation());
+            String localFile = jarFile.getAbsolutePath();
+            if (verifiedJars.contains(localFile)
+                    || unverifiedJars.contains(localFile)
+                    || !localFiles.add(localFile)) {
+                continue;
+            }
+            toRead.add(jar);
+            jarFiles.add(jarFile);
+        }
 
-                // some sort of resource download/cache error. Nothing to add
-                // in that case ... but don't fail here
-                if (jarFile == null) {
-                    continue;
-                }
+        // the jars are read concurrently, their signers are checked in order
+        final List<Future<VerifiedJar>> reads = readJars(toRead, jarFiles);
+        for (int i = 0; i < reads.size(); i++) {
+            String localFile = jarFiles.get(i).getAbsolutePath();
+            VerifyResult result = verifySigners(localFile, getVerifiedJar(reads.get(i)));
+
+            if (result == VerifyResult.UNSIGNED) {
+                unverifiedJars.add(localFile);
+            } else if (result == VerifyResult.SIGNED_NOT_OK) {
+                verifiedJars.add(localFile);
+            } else if (result == VerifyResult.SIGNED_OK) {
+                verifiedJars.add(localFile);
+            }
+        }
 
-                String localFile = jarFile.getAbsolutePath();
-                if (verifiedJars.contains(localFile)
-                        || unverifiedJars.contains(localFile)) {
-                    continue;
-                }
+        for (CertPath certPath : certs.keySet())
+            checkTrustedCerts(certPath);
+    }
+
+    /**
+     * Reads the jars on the {@link CachedDaemonThreadPoolProvider#DAEMON_COMPUTATION_THREAD_POOL},
+     * a single jar is read by the calling thread. Reads already started by
+     * {@link #readWhenDownloaded} are reused.
+     *
+     * @param jars
+     *            The jars to read.
+     * @param jarFiles
+     *            The cached files of the jars.
+     * @return The pending reads, in the order of the jars.
+     */
+    private List<Future<VerifiedJar>> readJars(List<JARDesc> jars, List<File> jarFiles) {
+        final AccessControlContext acc = AccessController.getContext();
+        final List<Future<VerifiedJar>> result = new ArrayList<>();
+        for (int i = 0; i < jars.size(); i++) {
+            final Future<VerifiedJar> pending = pendingReads.remove(jarFiles.get(i).getAbsolutePath());
+            if (pending != null) {
+                result.add(pending);
+                continue;
+            }
+            final Callable<VerifiedJar> read = newRead(jars.get(i), jarFiles.get(i), acc);
+            if (jars.size() == 1) {
+                final FutureTask<VerifiedJar> task = new FutureTask<>(read);
+                task.run();
+                result.add(task);
+            } else {
+                result.add(CachedDaemonThreadPoolProvider.DAEMON_COMPUTATION_THREAD_POOL.submit(read));
+            }
+        }
+        return result;
+    }
 
-                VerifyResult result = verifyJar(localFile);
+    private static Callable<VerifiedJar> newRead(final JARDesc jar, final File jarFile, final AccessControlContext acc) {
+        return new Callable<VerifiedJar>() {
+            @Override
+            public VerifiedJar call() throws Exception {
+                return AccessController.doPrivileged(new PrivilegedExceptionAction<VerifiedJar>() {
+                    @Override
+                    public VerifiedJar run() throws Exception {
+                        return readJar(jar, jarFile);
+                    }
+                }, acc);
+            }
+        };
+    }
 
-                if (result == VerifyResult.UNSIGNED) {
-                    unverifiedJars.add(localFile);
-                } else if (result == VerifyResult.SIGNED_NOT_OK) {
-                    verifiedJars.add(localFile);
-                } else if (result == VerifyResult.SIGNED_OK) {
-                    verifiedJars.add(localFile);
-                }
-            } catch (Exception e) {
-                // We may catch exceptions from using verifyJar()
-                // or from checkTrustedCerts
-                throw e;
+    private static VerifiedJar getVerifiedJar(Future<VerifiedJar> read) throws Exception {
+        try {
+            return read.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof PrivilegedActionException) {
+                cause = ((PrivilegedActionException) cause).getException();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
             }
+            throw ex;
         }
+    }
 
-        for (CertPath certPath : certs.keySet())
-            checkTrustedCerts(certPath);
+    /**
+     * Reads the signers of a cached jar. The entries of the jar are only read
+     * if the jar changed since they were read the last time, see {@link VerifiedJar}.
+     *
+     * @param jar
+     *            The jar to read.
+     * @param jarFile
+     *            The cached jar file.
+     * @return The signers of the entries of the jar.
+     * @throws Exception
+     *             Will be thrown if there are any problems with the jar.
+     */
+    private static VerifiedJar readJar(JARDesc jar, File jarFile) throws Exception {
+        final String jarName = jarFile.getAbsolutePath();
+        if (!CacheUtil.isCacheable(jar.getLocation(), jar.getVersion())) {
+            return readJar(jarName);
+        }
+
+        final String digest = VerifiedJar.digest(jarFile);
+        final VerifiedJar cached = VerifiedJar.decode(new CacheEntry(jar.getLocation(), jar.getVersion()).getVerifiedJar());
+        if (cached != null && digest.equals(cached.getDigest())) {
+            LOG.debug("Jar found at {} did not change since its last verification", jarName);
+            return cached;
+        }
+
+        final VerifiedJar verifiedJar = readJar(jarName).withDigest(digest);
+        try {
+            CacheUtil.storeVerifiedJar(jar.getLocation(), jar.getVersion(), verifiedJar.encode());
+        } catch (Exception ex) {
+            // the jar is read again next time
+            LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, ex);
+        }
+        return verifiedJar;
     }
 
     /**
-     * Checks through all the jar entries of jarName for signers, storing all the common ones in the certs hash map.
+     * Reads all the jar entries of jarName, which checks their signatures, and counts their signers.
      * 
      * @param jarName
      *            The absolute path to the jar file.
-     * @return The return of {@link JarCertVerifier#verifyJarEntryCerts} using the entries found in the jar located at jarName.
+     * @return The signers of the entries found in the jar located at jarName.
      * @throws Exception
      *             Will be thrown if there are any problems with the jar.
      */
-    private VerifyResult verifyJar(String jarName) throws Exception {
-        try (JarFile jarFile = new JarFile(jarName, true)) {
+    private static VerifiedJar readJar(String jarName) throws Exception {
+        // shares the jar the classloader holds open, see JarFilePool
+        try (JarFile jarFile = JarFilePool.getInstance().acquire(new File(jarName))) {
             Vector<JarEntry> entriesVec = new Vector<JarEntry>();
             byte[] buffer = new byte[8192];
 
@@ -296,8 +477,7 @@ public class JarCertVerifier implements CertVerifier {
                     }
                 }
             }
-            return verifyJarEntryCerts(jarName, jarFile.getManifest() != null,
-                    entriesVec);
+            return countSigners(jarFile.getManifest() != null, entriesVec);
 
         } catch (Exception e) {
             LOG.error(IcedTeaWebConstants.DEFAULT_ERROR_MESSAGE, e);
@@ -320,12 +500,23 @@ public class JarCertVerifier implements CertVerifier {
      */
     VerifyResult verifyJarEntryCerts(String jarName, boolean jarHasManifest,
             Vector<JarEntry> entries) throws Exception {
+        return verifySigners(jarName, countSigners(jarHasManifest, entries));
+    }
+
+    /**
+     * Counts the signable entries and the entries each signer signed.
+     *
+     * @param jarHasManifest
+     *            Whether or not the associated jar has a manifest.
+     * @param entries
+     *            The list of entries in the associated jar.
+     * @return The signers of the entries, without a digest.
+     */
+    private static VerifiedJar countSigners(boolean jarHasManifest, Vector<JarEntry> entries) {
         // Contains number of entries the cert with this CertPath has signed.
         Map<CertPath, Integer> jarSignCount = new HashMap<>();
         int numSignableEntriesInJar = 0;
 
-        // Record current time just before checking the jar begins.
-        long now = System.currentTimeMillis();
         if (jarHasManifest) {
 
             for (JarEntry je : entries) {
@@ -358,6 +549,25 @@ public class JarCertVerifier implements CertVerifier {
             numSignableEntriesInJar++;
         }
 
+        return new VerifiedJar(null, numSignableEntriesInJar, jarSignCount);
+    }
+
+    /**
+     * Checks the signers of a jar, storing all the common ones in the certs hash map.
+     *
+     * @param jarName
+     *            The absolute path to the jar file.
+     * @param verifiedJar
+     *            The signers of the entries of the jar.
+     * @return If there is at least one signable entry that is not signed by a common signer, return UNSIGNED. Otherwise every signable entry is signed by at least one common signer. If the signer has no issues, return SIGNED_OK. If there are any signing issues, return SIGNED_NOT_OK.
+     */
+    private VerifyResult verifySigners(String jarName, VerifiedJar verifiedJar) {
+        final Map<CertPath, Integer> jarSignCount = verifiedJar.getSignCount();
+        final int numSignableEntriesInJar = verifiedJar.getSignableEntries();
+
+        // Record current time just before checking the jar begins.
+        long now = System.currentTimeMillis();
+
         jarSignableEntries.put(jarName, numSignableEntriesInJar);
 
         // Find all signers that have signed every signable entry in this jar.
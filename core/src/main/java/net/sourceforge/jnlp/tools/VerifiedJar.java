@@ -0,0 +1,127 @@
+package net.sourceforge.jnlp.tools;
+
+import net.sourceforge.jnlp.util.FileUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertPath;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of reading all entries of a jar for {@link JarCertVerifier}: the
+ * number of signable entries and how many of them each signer signed.
+ * <p>
+ * It is stored in the cache entry of the jar together with the SHA-256
+ * digest of the jar file, so a jar which did not change since it was read
+ * is not read again. Only what the entries of the jar say is stored - the
+ * validity and the trust of the signers are checked again on every
+ * verification.
+ * </p>
+ */
+class VerifiedJar {
+
+    private static final String SEPARATOR = " ";
+    private static final String COUNT_SEPARATOR = ":";
+    private static final String CERT_PATH_ENCODING = "PkiPath";
+
+    private final String digest;
+    private final int signableEntries;
+    private final Map<CertPath, Integer> signCount;
+
+    VerifiedJar(String digest, int signableEntries, Map<CertPath, Integer> signCount) {
+        this.digest = digest;
+        this.signableEntries = signableEntries;
+        this.signCount = signCount;
+    }
+
+    /**
+     * @return the digest of the jar, or null if not known
+     */
+    String getDigest() {
+        return digest;
+    }
+
+    int getSignableEntries() {
+        return signableEntries;
+    }
+
+    /**
+     * @return the number of signable entries each signer signed
+     */
+    Map<CertPath, Integer> getSignCount() {
+        return Collections.unmodifiableMap(signCount);
+    }
+
+    VerifiedJar withDigest(String digest) {
+        return new VerifiedJar(digest, signableEntries, signCount);
+    }
+
+    String encode() throws CertificateException {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(digest).append(SEPARATOR).append(signableEntries);
+        for (Map.Entry<CertPath, Integer> entry : signCount.entrySet()) {
+            sb.append(SEPARATOR).append(entry.getValue()).append(COUNT_SEPARATOR)
+                    .append(Base64.getEncoder().encodeToString(entry.getKey().getEncoded(CERT_PATH_ENCODING)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param encoded the value stored in the cache entry
+     * @return the verified jar, or null if nothing or something unreadable
+     * was stored
+     */
+    static VerifiedJar decode(String encoded) {
+        if (encoded == null || encoded.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            final String[] parts = encoded.trim().split(SEPARATOR);
+            final Map<CertPath, Integer> signCount = new LinkedHashMap<>();
+            final CertificateFactory factory = CertificateFactory.getInstance("X.509");
+            for (int i = 2; i < parts.length; i++) {
+                final int separator = parts[i].indexOf(COUNT_SEPARATOR);
+                final byte[] certPath = Base64.getDecoder().decode(parts[i].substring(separator + 1));
+                signCount.put(factory.generateCertPath(new ByteArrayInputStream(certPath), CERT_PATH_ENCODING),
+                        Integer.parseInt(parts[i].substring(0, separator)));
+            }
+            return new VerifiedJar(parts[0], Integer.parseInt(parts[1]), signCount);
+        } catch (CertificateException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the jar file as it is, without inflating its entries.
+     *
+     * @param jar the jar file
+     * @return the hex encoded SHA-256 digest of the file
+     * @throws IOException if the file can not be read
+     */
+    static String digest(File jar) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        final byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(jar)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+        }
+        return FileUtils.toHexString(md.digest());
+    }
+}
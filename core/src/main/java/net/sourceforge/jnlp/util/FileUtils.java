@@ -683,4 +683,16 @@ public final class FileUtils {
 
         return md5.digest();
     }
+
+    /**
+     * @param digest a digest, e.g. of {@link MessageDigest#digest()}
+     * @return the digest as lower case hex string, two digits per byte
+     */
+    public static String toHexString(byte[] digest) {
+        final StringBuilder hexString = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hexString.append(String.format("%02x", b));
+        }
+        return hexString.toString();
+    }
 }
@@ -50,6 +50,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 
 /** Test various corner cases of the parser */
 public class ParserCornerCasesTest {
@@ -165,6 +166,16 @@ public class ParserCornerCasesTest {
         Assert.assertEquals(" -->", p.getInfo(root).get(0).getDescription());
     }
 
+    @Test
+    public void testNonAsciiTextAfterComment() throws ParseException {
+        String jnlp = "<?xml version='1.0' encoding='UTF-8'?>" +
+                "<jnlp><information><!-- comment --><title>\u010de\u0161tina \u65e5\u672c</title>" +
+                "<vendor>IcedTea</vendor></information></jnlp>";
+        Node root = Parser.getRootNode(new ByteArrayInputStream(jnlp.getBytes(StandardCharsets.UTF_8)), new ParserSettings(false, true, false));
+        Parser p = new Parser(null, null, root, defaultParser);
+        Assert.assertEquals("\u010de\u0161tina \u65e5\u672c", p.getInfo(root).get(0).getTitle());
+    }
+
     @Test
     public void testDoubleDashesInComments() throws ParseException {
         String malformedJnlp = "<?xml?>" +
@@ -239,4 +250,22 @@ public class ParserCornerCasesTest {
 
         }
     }
+
+    @Test
+    public void testChildNodesByName() throws ParseException {
+        String jnlp = "<?xml version='1.0'?><jnlp><resources><jar href='a.jar'/><x:jar href='b.jar'/>"
+                + "<property name='p'/><jar href='c.jar'/></resources></jnlp>";
+        Node root = Parser.getRootNode(new ByteArrayInputStream(jnlp.getBytes()), new ParserSettings(false, true, false));
+        Node resources = root.getChildNode("resources");
+        Node[] jars = resources.getChildNodes("jar");
+        Assert.assertEquals(3, jars.length);
+        Assert.assertEquals("a.jar", jars[0].getAttribute("href"));
+        Assert.assertEquals("b.jar", jars[1].getAttribute("href"));
+        Assert.assertEquals("x", jars[1].getNodeName().getPrefix());
+        Assert.assertEquals("c.jar", jars[2].getAttribute("href"));
+        Assert.assertSame(jars[0].getNodeName(), jars[2].getNodeName());
+        Assert.assertEquals(1, resources.getChildNodes("property").length);
+        Assert.assertEquals(0, resources.getChildNodes("nativelib").length);
+        Assert.assertNull(resources.getChildNode("nativelib"));
+    }
 }
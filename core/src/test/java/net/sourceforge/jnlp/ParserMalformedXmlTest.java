@@ -37,7 +37,10 @@ exception statement from your version.
 
 package net.sourceforge.jnlp;
 
+import net.adoptopenjdk.icedteaweb.xmlparser.MalformedXMLParser;
+import net.adoptopenjdk.icedteaweb.xmlparser.Node;
 import net.adoptopenjdk.icedteaweb.xmlparser.ParseException;
+import net.adoptopenjdk.icedteaweb.xmlparser.XMLParser;
 import net.sourceforge.jnlp.annotations.Bug;
 import net.sourceforge.jnlp.annotations.KnownToFail;
 import org.junit.Assert;
@@ -73,6 +76,49 @@ public class ParserMalformedXmlTest {
         originalJnlp = jnlpBuilder.toString();
     }
 
+    private static void assertSameTree(Node expected, Node actual) {
+        Assert.assertEquals(expected.getNodeName(), actual.getNodeName());
+        Assert.assertEquals(expected.getNodeValue(), actual.getNodeValue());
+        for (String name : expected.getAttributeNames()) {
+            Assert.assertEquals(expected.getAttribute(name), actual.getAttribute(name));
+        }
+        Node[] expectedChildren = expected.getChildNodes();
+        Node[] actualChildren = actual.getChildNodes();
+        Assert.assertEquals(expectedChildren.length, actualChildren.length);
+        for (int i = 0; i < expectedChildren.length; i++) {
+            assertSameTree(expectedChildren[i], actualChildren[i]);
+        }
+    }
+
+    @Test
+    public void testWellFormedXmlIsReadAsByNormalParser() throws ParseException {
+        String jnlp = originalJnlp.replace("<title>", "<title><!-- comment --><![CDATA[Title & ]]>&#x42;");
+        Node strict = Parser.getRootNode(new ByteArrayInputStream(jnlp.getBytes()), new ParserSettings(false, true, false));
+        Node lenient = Parser.getRootNode(new ByteArrayInputStream(jnlp.getBytes()), lenientParserSettings);
+        assertSameTree(strict, lenient);
+    }
+
+    @Test
+    public void testWellFormedXmlIsReadAsByTagSoup() throws ParseException {
+        String jnlp = originalJnlp
+                .replace("<title>Large JNLP</title>", "<Title>Large JNLP</Title>")
+                .replace("<homepage href=", "<homepage HREF=")
+                .replace("<argument>arg1</argument>", "<argument>arg1</argument><Param name='p' value='v'/>");
+        Node tagSoup = new XMLParser().getRootNode(MalformedXMLParser.xmlizeInputStream(new ByteArrayInputStream(jnlp.getBytes())));
+        Node lenient = Parser.getRootNode(new ByteArrayInputStream(jnlp.getBytes()), lenientParserSettings);
+        assertSameTree(tagSoup, lenient);
+        Node information = lenient.getChildNodes()[0];
+        Assert.assertEquals("title", information.getChildNodes()[0].getNodeName().getName());
+        Assert.assertEquals("http://homepage/", information.getChildNodes()[2].getAttribute("href"));
+    }
+
+    @Test
+    public void testMalformedXmlFallsBackToTagSoup() throws ParseException {
+        String malformedJnlp = originalJnlp.replace("'jnlp.jnlp'", "jnlp.jnlp");
+        Node root = Parser.getRootNode(new ByteArrayInputStream(malformedJnlp.getBytes()), lenientParserSettings);
+        Assert.assertEquals("jnlp.jnlp", root.getAttribute("href"));
+    }
+
     @Test
     public void testMissingXmlDecleration() throws ParseException {
         String malformedJnlp = originalJnlp.replaceFirst("<\\?xml.*\\?>", "");
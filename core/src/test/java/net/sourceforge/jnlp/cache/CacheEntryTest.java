@@ -53,6 +53,7 @@ import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -121,6 +122,18 @@ public class CacheEntryTest {
         assertEquals(CONTENT_LENGTH, entry.getRemoteContentLength());
     }
 
+    @Test
+    public void verifyETagIsSetCorrectly() {
+        String ETAG = "\"5d8c72a5edda8\"";
+
+        CacheEntry entry = new TestCacheEntry(url, version, null);
+        assertNull(entry.getETag());
+        entry.setETag(ETAG);
+        assertEquals(ETAG, entry.getETag());
+        entry.setETag(null);
+        assertNull(entry.getETag());
+    }
+
     @Test
     public void verifyNotCachedIfFileIsAbsent() {
         File doesNotExist = new File("/foo/bar/baz/spam/eggs");
@@ -0,0 +1,123 @@
+package net.sourceforge.jnlp.cache;
+
+import net.sourceforge.jnlp.config.InfrastructureFileDescriptor;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CacheEvictorTest {
+
+    private static class DummyInfrastructureFileDescriptor extends InfrastructureFileDescriptor {
+
+        private final File backend;
+
+        private DummyInfrastructureFileDescriptor(File backend) {
+            super();
+            this.backend = backend;
+        }
+
+        @Override
+        public File getFile() {
+            return backend;
+        }
+
+        @Override
+        public String getFullPath() {
+            return backend.getAbsolutePath();
+        }
+    }
+
+    private static final Executor UNUSED = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private File cacheDir;
+    private CacheLRUWrapper lru;
+    private CacheEvictor evictor;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("itw-evictor").toFile();
+        lru = new CacheLRUWrapper(
+                new DummyInfrastructureFileDescriptor(new File(cacheDir, "recently_used")),
+                new DummyInfrastructureFileDescriptor(cacheDir));
+        evictor = new CacheEvictor(lru, UNUSED);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.recursiveDelete(cacheDir, cacheDir);
+    }
+
+    private File addEntry(String key, String folder, String host, int length) throws IOException {
+        File file = new File(cacheDir, folder + File.separator + "http" + File.separator + host + File.separator + "a.jar");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), new byte[length]);
+        lru.lock();
+        try {
+            lru.addEntry(key, file.getPath());
+            lru.store();
+        } finally {
+            lru.unlock();
+        }
+        return file;
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws IOException {
+        File oldest = addEntry("100,1", "1", "a.example.com", 100);
+        File newer = addEntry("200,2", "2", "a.example.com", 100);
+        File newest = addEntry("300,3", "3", "b.example.com", 100);
+
+        assertEquals(100, evictor.evict(250, -1, Collections.<File>emptySet()));
+        assertFalse(oldest.exists());
+        assertFalse(new File(cacheDir, "1").exists());
+        assertTrue(newer.exists());
+        assertTrue(newest.exists());
+        assertFalse(lru.containsKey("100,1"));
+    }
+
+    @Test
+    public void testFilesInUseAreKept() throws IOException {
+        File oldest = addEntry("100,1", "1", "a.example.com", 100);
+        File newer = addEntry("200,2", "2", "a.example.com", 100);
+
+        assertEquals(100, evictor.evict(50, -1, Collections.singleton(oldest)));
+        assertTrue(oldest.exists());
+        assertFalse(newer.exists());
+    }
+
+    @Test
+    public void testDomainBudget() throws IOException {
+        File oldest = addEntry("100,1", "1", "a.example.com", 100);
+        File newer = addEntry("200,2", "2", "a.example.com", 100);
+        File other = addEntry("300,3", "3", "b.example.com", 100);
+
+        assertEquals(100, evictor.evict(-1, 150, Collections.<File>emptySet()));
+        assertFalse(oldest.exists());
+        assertTrue(newer.exists());
+        assertTrue(other.exists());
+    }
+
+    @Test
+    public void testUnlimitedBudgetEvictsNothing() throws IOException {
+        File file = addEntry("100,1", "1", "a.example.com", 100);
+
+        assertEquals(0, evictor.evict(-1, -1, Collections.<File>emptySet()));
+        assertTrue(file.exists());
+    }
+}
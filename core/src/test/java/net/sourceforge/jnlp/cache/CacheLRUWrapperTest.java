@@ -48,9 +48,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.concurrent.CountDownLatch;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class CacheLRUWrapperTest {
@@ -191,10 +195,10 @@ public class CacheLRUWrapperTest {
         lmAfter = cacheIndexFile.lastModified();
         assertTrue("modification timestamp has changed!", lmBefore == lmAfter);
 
-        // 3. add some cache entries and store
+        // 3. add some cache entries and fold them from the journal into the file
         lmBefore = cacheIndexFile.lastModified();
         fillCacheIndexFile(noEntriesCacheFile);
-        clw.store();
+        clw.compact();
         lmAfter = cacheIndexFile.lastModified();
         assertTrue("modification timestamp hasn't changed! Before = " + lmBefore + " After = " + lmAfter, lmBefore < lmAfter);
 
@@ -226,6 +230,130 @@ public class CacheLRUWrapperTest {
         assertTrue(clw.containsKey(key) && clw.containsValue(value));
     }
 
+    @Test
+    public void testNewestKeyForUrlPath() {
+        final File cacheIndexFile = clw.getRecentlyUsedFile().getFile();
+        cacheIndexFile.delete();
+        try {
+            clw.lock();
+            clearCacheIndexFile();
+            String urlPath = File.separator + "http" + File.separator + "example.com" + File.separator + "indexed.jar";
+            String older = clw.getCacheDir().getFullPath() + File.separator + "1" + urlPath;
+            String newer = clw.getCacheDir().getFullPath() + File.separator + "2" + urlPath;
+            clw.addEntry("100,1", older);
+            clw.addEntry("200,2", newer);
+            assertEquals("200,2", clw.getNewestKeyForUrlPath(urlPath));
+
+            // touching the older entry makes it the newest one
+            clw.updateEntry("100,1");
+            String key = clw.getNewestKeyForUrlPath(urlPath);
+            assertEquals(older, clw.getValue(key));
+
+            clw.removeEntry(key);
+            assertEquals("200,2", clw.getNewestKeyForUrlPath(urlPath));
+            assertNull(clw.getNewestKeyForUrlPath(File.separator + "unknown.jar"));
+        } finally {
+            clw.unlock();
+            cacheIndexFile.delete();
+        }
+    }
+
+    @Test
+    public void testUrlPathIndexFollowsJournal() {
+        final File cacheIndexFile = clw.getRecentlyUsedFile().getFile();
+        cacheIndexFile.delete();
+        CacheLRUWrapper other = new CacheLRUWrapper(
+                new DummyInfrastructureFileDescriptor(tmpIndexFile),
+                new DummyInfrastructureFileDescriptor(tmpCache));
+        try {
+            clw.lock();
+            clearCacheIndexFile();
+            String urlPath = File.separator + "http" + File.separator + "example.com" + File.separator + "journaled.jar";
+            String older = clw.getCacheDir().getFullPath() + File.separator + "4" + urlPath;
+            String newer = clw.getCacheDir().getFullPath() + File.separator + "5" + urlPath;
+            clw.addEntry("400,4", older);
+            clw.store();
+            other.load();
+            assertEquals("400,4", other.getNewestKeyForUrlPath(urlPath));
+
+            // the records replayed by the other instance update its index
+            clw.addEntry("500,5", newer);
+            clw.store();
+            other.load();
+            assertEquals("500,5", other.getNewestKeyForUrlPath(urlPath));
+            clw.removeEntry("500,5");
+            clw.store();
+            other.load();
+            assertEquals("400,4", other.getNewestKeyForUrlPath(urlPath));
+        } finally {
+            clw.unlock();
+            cacheIndexFile.delete();
+            clw.getJournal().getFile().delete();
+        }
+    }
+
+    @Test
+    public void testChangesAreJournaledAndCompacted() {
+        final File cacheIndexFile = clw.getRecentlyUsedFile().getFile();
+        cacheIndexFile.delete();
+        CacheLRUWrapper other = new CacheLRUWrapper(
+                new DummyInfrastructureFileDescriptor(tmpIndexFile),
+                new DummyInfrastructureFileDescriptor(tmpCache));
+        try {
+            clw.lock();
+            clearCacheIndexFile();
+            long snapshotLength = cacheIndexFile.length();
+
+            String path = clw.getCacheDir().getFullPath() + File.separator + "3" + File.separator + "journaled.jar";
+            clw.addEntry("300,3", path);
+            clw.store();
+            clw.updateEntry("300,3");
+            clw.store();
+            assertEquals("snapshot must not be rewritten", snapshotLength, cacheIndexFile.length());
+            assertTrue(clw.getJournal().length() > 0);
+
+            // another process sees the journaled changes
+            other.load();
+            assertFalse(other.containsKey("300,3"));
+            assertTrue(other.containsValue(path));
+
+            clw.compact();
+            assertEquals(0, clw.getJournal().length());
+            other.load();
+            assertTrue(other.containsValue(path));
+        } finally {
+            clw.unlock();
+            cacheIndexFile.delete();
+            clw.getJournal().getFile().delete();
+        }
+    }
+
+    @Test
+    public void testTornJournalRecordIsIgnored() throws IOException {
+        final File cacheIndexFile = clw.getRecentlyUsedFile().getFile();
+        cacheIndexFile.delete();
+        try {
+            clw.lock();
+            clearCacheIndexFile();
+            String path = clw.getCacheDir().getFullPath() + File.separator + "4" + File.separator + "torn.jar";
+            Files.write(clw.getJournal().getFile().toPath(), ("+\t400,4\t" + path).getBytes(StandardCharsets.UTF_8));
+            clw.load();
+            assertFalse(clw.containsKey("400,4"));
+
+            // the next record must not be glued to the torn one
+            clw.addEntry("500,4", path);
+            clw.store();
+            clw.clearLRUSortedEntries();
+            clw.getJournal().replay(clw.getRecentlyUsedPropertiesFile(), 0);
+            assertTrue(clw.containsKey("500,4"));
+            assertFalse(clw.containsKey("400,4"));
+        } finally {
+            clw.unlock();
+            cacheIndexFile.delete();
+            clw.getJournal().getFile().delete();
+        }
+    }
+
     @Test
     public void testRemoveEntry() {
         String key = "key";
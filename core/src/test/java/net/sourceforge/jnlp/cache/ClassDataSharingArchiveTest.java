@@ -0,0 +1,76 @@
+package net.sourceforge.jnlp.cache;
+
+import net.sourceforge.jnlp.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassDataSharingArchiveTest {
+
+    private File dir;
+    private File mainJar;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("itw-cds").toFile();
+        mainJar = new File(dir, "main.jar");
+        Files.write(mainJar.toPath(), new byte[1]);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.recursiveDelete(dir, dir);
+    }
+
+    @Test
+    public void testJavaVersion() {
+        assertEquals(8, ClassDataSharingArchive.getJavaVersion("1.8"));
+        assertEquals(13, ClassDataSharingArchive.getJavaVersion("13"));
+        assertEquals(17, ClassDataSharingArchive.getJavaVersion("17.0"));
+        assertEquals(8, ClassDataSharingArchive.getJavaVersion("1.8.0_392"));
+        assertEquals(0, ClassDataSharingArchive.getJavaVersion(null));
+        assertEquals(0, ClassDataSharingArchive.getJavaVersion("x"));
+    }
+
+    @Test
+    public void testFingerprintFollowsValidators() {
+        String first = ClassDataSharingArchive.getFingerprint(Arrays.asList("a", "1"));
+        assertEquals(first, ClassDataSharingArchive.getFingerprint(Arrays.asList("a", "1")));
+        assertNotEquals(first, ClassDataSharingArchive.getFingerprint(Arrays.asList("a", "2")));
+        assertNotEquals(first, ClassDataSharingArchive.getFingerprint(Arrays.asList("a1")));
+        assertEquals(32, first.length());
+    }
+
+    @Test
+    public void testArchiveIsRecordedAndStaleOnesRemoved() throws IOException {
+        File stale = new File(dir, "main.jar-old" + ClassDataSharingArchive.SUFFIX);
+        File other = new File(dir, "other.jar-old" + ClassDataSharingArchive.SUFFIX);
+        Files.write(stale.toPath(), new byte[1]);
+        Files.write(other.toPath(), new byte[1]);
+
+        ClassDataSharingArchive archive = new ClassDataSharingArchive(mainJar, "abc");
+        assertEquals(new File(dir, "main.jar-abc.jsa"), archive.getFile());
+        assertEquals(Collections.singletonList("-XX:ArchiveClassesAtExit=" + archive.getFile().getPath()), archive.getVMArgs());
+        assertFalse(stale.exists());
+        assertTrue(other.exists());
+    }
+
+    @Test
+    public void testRecordedArchiveIsUsed() throws IOException {
+        ClassDataSharingArchive archive = new ClassDataSharingArchive(mainJar, "abc");
+        Files.write(archive.getFile().toPath(), new byte[1]);
+        assertEquals(Collections.singletonList("-XX:SharedArchiveFile=" + archive.getFile().getPath()), archive.getVMArgs());
+        assertTrue(archive.getFile().exists());
+    }
+}
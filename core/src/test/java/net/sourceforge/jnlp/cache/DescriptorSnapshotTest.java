@@ -0,0 +1,90 @@
+package net.sourceforge.jnlp.cache;
+
+import net.adoptopenjdk.icedteaweb.xmlparser.Node;
+import net.sourceforge.jnlp.Parser;
+import net.sourceforge.jnlp.ParserSettings;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DescriptorSnapshotTest {
+
+    private static final ParserSettings SETTINGS = new ParserSettings(false, true, false);
+
+    private File dir;
+    private File descriptor;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("itw-snapshot").toFile();
+        descriptor = new File(dir, "app.jnlp");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.recursiveDelete(dir, dir);
+    }
+
+    private void writeDescriptor(String title) throws IOException {
+        String jnlp = "<?xml version='1.0' encoding='UTF-8'?>"
+                + "<jnlp spec='1.0' href='http://localhost/app.jnlp'><!-- comment --><information>"
+                + "<title>" + title + "</title><vendor>IcedTea</vendor></information>"
+                + "<resources><jar href='http://localhost/app.jar' main='true'/></resources></jnlp>";
+        Files.write(descriptor.toPath(), jnlp.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String getTitle(Node root) throws Exception {
+        Parser parser = new Parser(null, null, root, SETTINGS);
+        return parser.getInfo(root).get(0).getTitle();
+    }
+
+    @Test
+    public void testSnapshotIsWrittenAndRead() throws Exception {
+        writeDescriptor("\u010ce\u0161tina");
+        File snapshot = DescriptorSnapshot.getSnapshotFile(descriptor);
+        assertFalse(snapshot.exists());
+
+        Node parsed = DescriptorSnapshot.getRootNode(descriptor, SETTINGS);
+        assertTrue(snapshot.isFile());
+        assertTrue(DescriptorSnapshot.isSnapshotOf(descriptor, snapshot));
+        long written = snapshot.lastModified();
+
+        Node read = DescriptorSnapshot.getRootNode(descriptor, SETTINGS);
+        assertEquals(written, snapshot.lastModified());
+        assertEquals(getTitle(parsed), getTitle(read));
+        assertEquals("\u010ce\u0161tina", getTitle(read));
+        assertEquals(parsed.getAttribute("href"), read.getAttribute("href"));
+        assertEquals(parsed.getChildNodes().length, read.getChildNodes().length);
+        assertEquals(parsed.getChildNodes()[1].getFirstChild().getAttribute("main"),
+                read.getChildNodes()[1].getFirstChild().getAttribute("main"));
+    }
+
+    @Test
+    public void testChangedDescriptorIsParsedAgain() throws Exception {
+        writeDescriptor("first");
+        assertEquals("first", getTitle(DescriptorSnapshot.getRootNode(descriptor, SETTINGS)));
+        writeDescriptor("second");
+        assertEquals("second", getTitle(DescriptorSnapshot.getRootNode(descriptor, SETTINGS)));
+        assertEquals("second", getTitle(DescriptorSnapshot.getRootNode(descriptor, SETTINGS)));
+    }
+
+    @Test
+    public void testUnreadableSnapshotIsReplaced() throws Exception {
+        writeDescriptor("title");
+        File snapshot = DescriptorSnapshot.getSnapshotFile(descriptor);
+        Files.write(snapshot.toPath(), new byte[]{0, 0, 0, 1, 0});
+        assertEquals("title", getTitle(DescriptorSnapshot.getRootNode(descriptor, SETTINGS)));
+        assertEquals("title", getTitle(DescriptorSnapshot.getRootNode(descriptor, SETTINGS)));
+        assertTrue(snapshot.length() > 5);
+    }
+}
@@ -0,0 +1,117 @@
+package net.sourceforge.jnlp.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+public class DownloadSchedulerTest {
+
+    /** collects started downloads, runs them only on request */
+    private static class ManualExecutor implements Executor {
+
+        private final List<Runnable> started = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            started.add(command);
+        }
+
+        void finish(int index) {
+            started.remove(index).run();
+        }
+    }
+
+    /** records the order in which downloads were executed */
+    private final List<String> order = new ArrayList<>();
+
+    private ManualExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new ManualExecutor();
+        order.clear();
+    }
+
+    private Runnable download(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+
+    private static Resource createResource(String host, String name, DownloadPriority priority) throws Exception {
+        Resource resource = Resource.getResource(new URL("http://" + host + "/" + name + ".jar"), null, UpdatePolicy.ALWAYS);
+        resource.setPriority(priority);
+        return resource;
+    }
+
+    @Test
+    public void testGlobalLimit() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(2, 10, executor);
+        for (int i = 0; i < 5; i++) {
+            scheduler.schedule(createResource("limit.example.com", "global" + i, DownloadPriority.NORMAL), download("global" + i));
+        }
+        assertEquals(2, scheduler.getRunning());
+        assertEquals(3, scheduler.getWaiting());
+
+        executor.finish(0);
+        assertEquals(2, scheduler.getRunning());
+        assertEquals(2, scheduler.getWaiting());
+    }
+
+    @Test
+    public void testPerHostLimit() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(10, 1, executor);
+        scheduler.schedule(createResource("a.example.com", "hostA1", DownloadPriority.NORMAL), download("hostA1"));
+        scheduler.schedule(createResource("a.example.com", "hostA2", DownloadPriority.NORMAL), download("hostA2"));
+        scheduler.schedule(createResource("b.example.com", "hostB1", DownloadPriority.NORMAL), download("hostB1"));
+        assertEquals(2, scheduler.getRunning());
+        assertEquals(1, scheduler.getWaiting());
+
+        executor.finish(0);
+        assertEquals(2, scheduler.getRunning());
+        assertEquals(0, scheduler.getWaiting());
+        assertEquals("hostA1", order.get(0));
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(1, 1, executor);
+        scheduler.schedule(createResource("prio.example.com", "first", DownloadPriority.NORMAL), download("first"));
+        scheduler.schedule(createResource("prio.example.com", "prefetch", DownloadPriority.PREFETCH), download("prefetch"));
+        scheduler.schedule(createResource("prio.example.com", "eager", DownloadPriority.NORMAL), download("eager"));
+        scheduler.schedule(createResource("prio.example.com", "waited", DownloadPriority.WAITED), download("waited"));
+
+        while (!executor.started.isEmpty()) {
+            executor.finish(0);
+        }
+        assertEquals("first", order.get(0));
+        assertEquals("waited", order.get(1));
+        assertEquals("eager", order.get(2));
+        assertEquals("prefetch", order.get(3));
+    }
+
+    @Test
+    public void testBoostedInQueue() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(1, 1, executor);
+        scheduler.schedule(createResource("boost.example.com", "running", DownloadPriority.NORMAL), download("running"));
+        scheduler.schedule(createResource("boost.example.com", "normal", DownloadPriority.NORMAL), download("normal"));
+        Resource part = createResource("boost.example.com", "part", DownloadPriority.PREFETCH);
+        scheduler.schedule(part, download("part"));
+
+        part.raisePriority(DownloadPriority.BOOSTED);
+        while (!executor.started.isEmpty()) {
+            executor.finish(0);
+        }
+        assertEquals("part", order.get(1));
+        assertEquals("normal", order.get(2));
+    }
+}
@@ -0,0 +1,593 @@
+package net.sourceforge.jnlp.cache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.sourceforge.jnlp.DownloadOptions;
+import net.sourceforge.jnlp.config.DeploymentConfiguration;
+import net.sourceforge.jnlp.config.PathsAndFiles;
+import net.sourceforge.jnlp.runtime.JNLPRuntime;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.jar.Pack200;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link ResourceDownloader} against an in-process http server, which
+ * records the requests it gets.
+ */
+public class ResourceDownloaderHttpTest {
+
+    private static final String[] KEYS = {
+            DeploymentConfiguration.KEY_PARALLEL_URL_PROBING,
+            DeploymentConfiguration.KEY_SINGLE_REQUEST_DOWNLOAD,
+            DeploymentConfiguration.KEY_DOWNLOAD_RETRIES,
+            DeploymentConfiguration.KEY_CACHE_KEEP_COMPRESSED
+    };
+
+    private static final String RANGE_ETAG = "\"r1\"";
+    private static final String LAST_MODIFIED = "Sat, 03 Oct 2026 10:00:00 GMT";
+
+    private static String originalCacheDir;
+    private static File cacheDir;
+
+    private final Map<String, String> originalConfiguration = new HashMap<>();
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+
+    /**
+     * A request the server got, with the headers the tests look at.
+     */
+    private static class Request {
+
+        private final String method;
+        private final String path;
+        private final String range;
+        private final String ifRange;
+        private final String ifNoneMatch;
+        private final String acceptEncoding;
+
+        Request(HttpExchange exchange) {
+            this(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                    exchange.getRequestHeaders().getFirst("Range"),
+                    exchange.getRequestHeaders().getFirst("If-Range"),
+                    exchange.getRequestHeaders().getFirst("If-None-Match"),
+                    exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        }
+
+        Request(String method, String path, String range, String ifRange, String ifNoneMatch, String acceptEncoding) {
+            this.method = method;
+            this.path = path;
+            this.range = range;
+            this.ifRange = ifRange;
+            this.ifNoneMatch = ifNoneMatch;
+            this.acceptEncoding = acceptEncoding;
+        }
+
+        int getRangeStart() {
+            return Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+        }
+    }
+
+    /**
+     * Serves one body over plain sockets, as {@link HttpServer} can not drop
+     * a connection in the middle of a body. The first full GET request is
+     * reset after part of the body, range requests are answered by the rest
+     * of the body.
+     */
+    private class DroppingServer implements Runnable {
+
+        private final ServerSocket socket;
+        private final byte[] body;
+        private final int dropAfter;
+        private final String contentEncoding;
+        private boolean dropped = false;
+
+        DroppingServer(byte[] body, int dropAfter, String contentEncoding) throws IOException {
+            this.socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.body = body;
+            this.dropAfter = dropAfter;
+            this.contentEncoding = contentEncoding;
+            final Thread thread = new Thread(this, "itw-dropping-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        URL getUrl(String path) throws IOException {
+            return new URL("http://localhost:" + socket.getLocalPort() + path);
+        }
+
+        void stop() throws IOException {
+            socket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                try (Socket client = socket.accept()) {
+                    handle(client);
+                } catch (IOException ex) {
+                    // closed by the client or by stop()
+                }
+            }
+        }
+
+        /**
+         * @return the first byte of the answer to the range request
+         */
+        int getRangeStart(Request request) {
+            return request.getRangeStart();
+        }
+
+        /**
+         * @return the encoding told in the answer to the range request
+         */
+        String getRangeEncoding() {
+            return contentEncoding;
+        }
+
+        private void handle(Socket client) throws IOException {
+            final BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.ISO_8859_1));
+            final String[] requestLine = in.readLine().split(" ");
+            final Map<String, String> headers = new HashMap<>();
+            for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+                final int colon = line.indexOf(':');
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+            final Request request = new Request(requestLine[0], requestLine[1], headers.get("range"), headers.get("if-range"), headers.get("if-none-match"), headers.get("accept-encoding"));
+            requests.add(request);
+
+            final OutputStream out = client.getOutputStream();
+            final StringBuilder head = new StringBuilder();
+            int offset = 0;
+            String encoding = contentEncoding;
+            if (request.range != null && RANGE_ETAG.equals(request.ifRange)) {
+                offset = getRangeStart(request);
+                encoding = getRangeEncoding();
+                head.append("HTTP/1.1 206 Partial Content\r\n");
+                head.append("Content-Range: bytes ").append(offset).append("-").append(body.length - 1).append("/").append(body.length).append("\r\n");
+            } else {
+                head.append("HTTP/1.1 200 OK\r\n");
+            }
+            head.append("ETag: ").append(RANGE_ETAG).append("\r\n");
+            head.append("Last-Modified: ").append(LAST_MODIFIED).append("\r\n");
+            if (encoding != null) {
+                head.append("Content-Encoding: ").append(encoding).append("\r\n");
+            }
+            head.append("Content-Length: ").append(body.length - offset).append("\r\n");
+            head.append("Connection: close\r\n\r\n");
+            out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            if (request.method.equals("HEAD")) {
+                out.flush();
+                return;
+            }
+            if (offset == 0 && !dropped) {
+                dropped = true;
+                out.write(body, 0, dropAfter);
+                out.flush();
+                try {
+                    // let the client read the part before the connection is reset
+                    Thread.sleep(500);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                client.setSoLinger(true, 0);
+                return;
+            }
+            out.write(body, offset, body.length - offset);
+            out.flush();
+        }
+    }
+
+    /**
+     * Answers requests of one path, after the request was recorded.
+     */
+    private abstract class RecordingHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            final Request request = new Request(exchange);
+            requests.add(request);
+            try {
+                handle(exchange, request);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        abstract void handle(HttpExchange exchange, Request request) throws IOException;
+    }
+
+    @BeforeClass
+    public static void setUpCache() throws IOException {
+        originalCacheDir = PathsAndFiles.CACHE_DIR.getFullPath();
+        cacheDir = Files.createTempDirectory("itw-download").toFile();
+        PathsAndFiles.CACHE_DIR.setValue(cacheDir.getAbsolutePath());
+    }
+
+    @AfterClass
+    public static void tearDownCache() throws IOException {
+        CacheUtil.clearCache();
+        PathsAndFiles.CACHE_DIR.setValue(originalCacheDir);
+        FileUtils.recursiveDelete(cacheDir, cacheDir);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        for (String key : KEYS) {
+            originalConfiguration.put(key, JNLPRuntime.getConfiguration().getProperty(key));
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // concurrent probes must not wait for each other on the server
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        for (String key : KEYS) {
+            JNLPRuntime.getConfiguration().setProperty(key, originalConfiguration.get(key));
+        }
+    }
+
+    private static void setProperty(String key, String value) {
+        JNLPRuntime.getConfiguration().setProperty(key, value);
+    }
+
+    private URL getUrl(String path) throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private void serve(String path, byte[] body) {
+        serve(path, body, null);
+    }
+
+    private void serve(String path, final byte[] body, final String etag) {
+        server.createContext(path, new RecordingHandler() {
+            @Override
+            void handle(HttpExchange exchange, Request request) throws IOException {
+                if (etag != null) {
+                    exchange.getResponseHeaders().set("ETag", etag);
+                    if (etag.equals(request.ifNoneMatch)) {
+                        exchange.sendResponseHeaders(304, -1);
+                        return;
+                    }
+                }
+                if (request.method.equals("HEAD")) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+    }
+
+    private List<Request> getRequests(String path) {
+        final List<Request> result = new ArrayList<>();
+        synchronized (requests) {
+            for (Request request : requests) {
+                if (request.path.equals(path)) {
+                    result.add(request);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Resource download(Resource resource) {
+        resource.resetStatus();
+        resource.setStatusFlag(Resource.Status.PRECONNECT);
+        new ResourceDownloader(resource).run();
+        return resource;
+    }
+
+    private static String readLocalFile(Resource resource) throws IOException {
+        return new String(Files.readAllBytes(resource.getLocalFile().toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] body(int length) {
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            sb.append(sb.length() % 10);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test(timeout = 60000)
+    public void testParallelProbingKeepsPriorityOfUrls() throws Exception {
+        setProperty(DeploymentConfiguration.KEY_PARALLEL_URL_PROBING, "true");
+        final byte[] packed = "packed".getBytes(StandardCharsets.UTF_8);
+        server.createContext("/probe/a.jar.pack.gz", new RecordingHandler() {
+            @Override
+            void handle(HttpExchange exchange, Request request) throws IOException {
+                try {
+                    // the preferred url answers last
+                    Thread.sleep(300);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                exchange.sendResponseHeaders(200, request.method.equals("HEAD") ? -1 : packed.length);
+                if (!request.method.equals("HEAD")) {
+                    exchange.getResponseBody().write(packed);
+                }
+            }
+        });
+        serve("/probe/a.jar", "plain".getBytes(StandardCharsets.UTF_8));
+
+        final Resource resource = Resource.getResource(getUrl("/probe/a.jar"), null, UpdatePolicy.ALWAYS);
+        resource.setDownloadOptions(new DownloadOptions(true, false));
+        final ResourceDownloader.UrlRequestResult best = new ResourceDownloader(resource).findBestUrl(resource);
+
+        assertEquals(getUrl("/probe/a.jar.pack.gz"), best.getURL());
+        assertEquals(1, getRequests("/probe/a.jar.pack.gz").size());
+        assertEquals(1, getRequests("/probe/a.jar").size());
+        // the permits of the host are dropped once its probes are over
+        for (int i = 0; i < 50 && ResourceDownloader.getProbedHostsCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, ResourceDownloader.getProbedHostsCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testSingleRequestDownload() throws Exception {
+        setProperty(DeploymentConfiguration.KEY_SINGLE_REQUEST_DOWNLOAD, "true");
+        serve("/single/a.txt", "single request".getBytes(StandardCharsets.UTF_8));
+
+        final Resource resource = download(Resource.getResource(getUrl("/single/a.txt"), null, UpdatePolicy.ALWAYS));
+
+        assertTrue(resource.isSet(Resource.Status.DOWNLOADED));
+        assertEquals("single request", readLocalFile(resource));
+        final List<Request> received = getRequests("/single/a.txt");
+        assertEquals(1, received.size());
+        assertEquals("GET", received.get(0).method);
+    }
+
+    @Test(timeout = 60000)
+    public void testNotModifiedResourceIsNotTransferredAgain() throws Exception {
+        serve("/revalidate/a.txt", "revalidated".getBytes(StandardCharsets.UTF_8), "\"v1\"");
+
+        final Resource resource = download(Resource.getResource(getUrl("/revalidate/a.txt"), null, UpdatePolicy.ALWAYS));
+        assertEquals("revalidated", readLocalFile(resource));
+        requests.clear();
+
+        download(resource);
+
+        assertTrue(resource.isSet(Resource.Status.DOWNLOADED));
+        assertEquals("revalidated", readLocalFile(resource));
+        final List<Request> received = getRequests("/revalidate/a.txt");
+        assertFalse(received.isEmpty());
+        for (Request request : received) {
+            assertEquals("\"v1\"", request.ifNoneMatch);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testPartialFileOfUnknownLengthIsNotRevalidated() throws Exception {
+        serve("/partial/a.txt", "complete content".getBytes(StandardCharsets.UTF_8), "\"v1\"");
+        final URL location = getUrl("/partial/a.txt");
+        // leftover of an interrupted download of a body without length
+        try (OutputStream out = CacheUtil.getOutputStream(location, null)) {
+            out.write("complete".getBytes(StandardCharsets.UTF_8));
+        }
+        final CacheEntry entry = new CacheEntry(location, null);
+        entry.lock();
+        try {
+            entry.setRemoteContentLength(-1);
+            entry.setLastModified(System.currentTimeMillis());
+            entry.setETag("\"v1\"");
+            entry.setPartialValidator("\"v1\"");
+            entry.store();
+        } finally {
+            entry.unlock();
+        }
+
+        final Resource resource = download(Resource.getResource(location, null, UpdatePolicy.ALWAYS));
+
+        assertTrue(resource.isSet(Resource.Status.DOWNLOADED));
+        assertEquals("complete content", readLocalFile(resource));
+        for (Request request : getRequests("/partial/a.txt")) {
+            assertNull(request.ifNoneMatch);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testBrokenDownloadIsResumedByRange() throws Exception {
+        setProperty(DeploymentConfiguration.KEY_DOWNLOAD_RETRIES, "1");
+        final byte[] content = body(64 * 1024);
+        final DroppingServer dropping = new DroppingServer(content, 20 * 1024, null);
+        try {
+            final Resource resource = download(Resource.getResource(dropping.getUrl("/resume/a.jar"), null, UpdatePolicy.ALWAYS));
+
+            assertTrue(resource.isSet(Resource.Status.DOWNLOADED));
+            assertEquals(new String(content, StandardCharsets.UTF_8), readLocalFile(resource));
+            Request resumed = null;
+            for (Request request : getRequests("/resume/a.jar")) {
+                if (request.range != null) {
+                    resumed = request;
+                }
+            }
+            assertTrue(resumed != null);
+            assertEquals(RANGE_ETAG, resumed.ifRange);
+            assertEquals("identity", resumed.acceptEncoding);
+            assertTrue(resumed.getRangeStart() > 0);
+            final CacheEntry entry = new CacheEntry(resource.getLocation(), null);
+            assertNull(entry.getPartialValidator());
+            assertEquals(content.length, entry.getRemoteContentLength());
+            assertEquals(ZonedDateTime.parse(LAST_MODIFIED, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli(), entry.getLastModified());
+        } finally {
+            dropping.stop();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testRangeAnswerFromOtherOffsetIsNotAppended() throws Exception {
+        setProperty(DeploymentConfiguration.KEY_DOWNLOAD_RETRIES, "1");
+        final byte[] content = body(64 * 1024);
+        final DroppingServer dropping = new DroppingServer(content, 20 * 1024, null) {
+            @Override
+            int getRangeStart(Request request) {
+                return request.getRangeStart() - 1;
+            }
+        };
+        try {
+            assertRestartedAfterRange(dropping, "/offset/a.jar", content);
+        } finally {
+            dropping.stop();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testEncodedRangeAnswerIsNotAppended() throws Exception {
+        setProperty(DeploymentConfiguration.KEY_DOWNLOAD_RETRIES, "1");
+        final byte[] content = body(64 * 1024);
+        final DroppingServer dropping = new DroppingServer(content, 20 * 1024, null) {
+            @Override
+            String getRangeEncoding() {
+                return "gzip";
+            }
+        };
+        try {
+            assertRestartedAfterRange(dropping, "/encoded/a.jar", content);
+        } finally {
+            dropping.stop();
+        }
+    }
+
+    private void assertRestartedAfterRange(DroppingServer dropping, String path, byte[] content) throws Exception {
+        final Resource resource = download(Resource.getResource(dropping.getUrl(path), null, UpdatePolicy.ALWAYS));
+
+        assertTrue(resource.isSet(Resource.Status.DOWNLOADED));
+        assertEquals(new String(content, StandardCharsets.UTF_8), readLocalFile(resource));
+        final List<Request> received = new ArrayList<>();
+        for (Request request : getRequests(path)) {
+            if (request.method.equals("GET")) {
+                received.add(request);
+            }
+        }
+        // the whole body, the range which does not fit and the whole body again
+        assertEquals(3, received.size());
+        assertTrue(received.get(1).range != null);
+        assertNull(received.get(2).range);
+        assertEquals("identity", received.get(2).acceptEncoding);
+    }
+
+    @Test(timeout = 60000)
+    public void testGzipBodyIsInflatedWhileDownloading() throws Exception {
+        final byte[] content = body(16 * 1024);
+        final byte[] compressed = gzip(content);
+        server.createContext("/gzip/a.txt", new RecordingHandler() {
+            @Override
+            void handle(HttpExchange exchange, Request request) throws IOException {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, request.method.equals("HEAD") ? -1 : compressed.length);
+                if (!request.method.equals("HEAD")) {
+                    exchange.getResponseBody().write(compressed);
+                }
+            }
+        });
+
+        final Resource resource = download(Resource.getResource(getUrl("/gzip/a.txt"), null, UpdatePolicy.ALWAYS));
+
+        assertTrue(resource.isSet(Resource.Status.DOWNLOADED));
+        assertEquals(new String(content, StandardCharsets.UTF_8), readLocalFile(resource));
+    }
+
+    @Test(timeout = 60000)
+    public void testPackGzBodyIsUnpackedWhileDownloading() throws Exception {
+        final File jar = File.createTempFile("itw-download", ".jar");
+        final ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        try {
+            final Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().putValue("Created-By", "pack200 test");
+            new JarOutputStream(Files.newOutputStream(jar.toPath()), manifest).close();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(packed);
+                 JarFile jarFile = new JarFile(jar)) {
+                Pack200.newPacker().pack(jarFile, gzip);
+            }
+        } finally {
+            jar.delete();
+        }
+        serve("/packgz/a.jar.pack.gz", packed.toByteArray());
+
+        final Resource resource = Resource.getResource(getUrl("/packgz/a.jar"), null, UpdatePolicy.ALWAYS);
+        resource.setDownloadOptions(new DownloadOptions(true, false));
+        download(resource);
+
+        assertTrue(resource.isSet(Resource.Status.DOWNLOADED));
+        try (JarFile jarFile = new JarFile(resource.getLocalFile())) {
+            assertEquals("pack200 test", jarFile.getManifest().getMainAttributes().getValue("Created-By"));
+        }
+        // the compressed body is not kept by default
+        assertFalse(CacheUtil.isCached(getUrl("/packgz/a.jar.pack.gz"), null));
+    }
+
+    @Test(timeout = 60000)
+    public void testBrokenCompressedDownloadIsRestarted() throws Exception {
+        setProperty(DeploymentConfiguration.KEY_DOWNLOAD_RETRIES, "1");
+        final byte[] content = body(64 * 1024);
+        final byte[] compressed = gzip(content);
+        final DroppingServer dropping = new DroppingServer(compressed, compressed.length / 2, "gzip");
+        try {
+            final Resource resource = download(Resource.getResource(dropping.getUrl("/regzip/a.txt"), null, UpdatePolicy.ALWAYS));
+
+            assertTrue(resource.isSet(Resource.Status.DOWNLOADED));
+            assertEquals(new String(content, StandardCharsets.UTF_8), readLocalFile(resource));
+            for (Request request : getRequests("/regzip/a.txt")) {
+                // the state of the inflater can not be resumed
+                assertNull(request.range);
+            }
+        } finally {
+            dropping.stop();
+        }
+    }
+}
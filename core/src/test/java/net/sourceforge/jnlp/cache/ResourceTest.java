@@ -132,6 +132,42 @@ public class ResourceTest {
         assertFalse(dummy.contains(DOWNLOADING));		
     }
 
+    @Test
+    public void testRaisePriorityNeverLowers() throws Exception {
+        Resource res = createResource("RaisePriority");
+        res.setPriority(DownloadPriority.PREFETCH);
+        res.raisePriority(DownloadPriority.WAITED);
+        assertEquals(DownloadPriority.WAITED, res.getPriority());
+        res.raisePriority(DownloadPriority.NORMAL);
+        assertEquals(DownloadPriority.WAITED, res.getPriority());
+    }
+
+    @Test
+    public void testFutureCompletesWithStatus() throws Exception {
+        Resource res = createResource("FuturesComplete");
+        assertFalse(res.getDownloadedFuture().isDone());
+        res.changeStatus(null, EnumSet.of(CONNECTED));
+        assertFalse(res.getDownloadedFuture().isDone());
+        res.changeStatus(null, EnumSet.of(DOWNLOADED));
+        assertEquals(res, res.getDownloadedFuture().get());
+    }
+
+    @Test
+    public void testErrorCompletesFuture() throws Exception {
+        Resource res = createResource("FuturesError");
+        res.setStatusFlag(Resource.Status.ERROR);
+        assertTrue(res.getDownloadedFuture().isDone());
+    }
+
+    @Test
+    public void testResetStatusRenewsFuture() throws Exception {
+        Resource res = createResource("FuturesReset");
+        res.setStatusFlag(DOWNLOADED);
+        assertTrue(res.getDownloadedFuture().isDone());
+        res.resetStatus();
+        assertFalse(res.getDownloadedFuture().isDone());
+    }
+
     @Test
     public void testNewResourceIsUninitialized() throws Exception {
         Resource res = createResource("NewResource");
@@ -35,8 +35,11 @@ exception statement from your version.
  */
 package net.sourceforge.jnlp.runtime;
 
+import net.adoptopenjdk.icedteaweb.jdk89access.JarIndexAccess;
 import net.sourceforge.jnlp.JARDesc;
+import net.sourceforge.jnlp.JNLPFile;
 import net.sourceforge.jnlp.LaunchException;
+import net.sourceforge.jnlp.SecurityDesc;
 import net.sourceforge.jnlp.annotations.Bug;
 import net.sourceforge.jnlp.cache.UpdatePolicy;
 import net.sourceforge.jnlp.config.DeploymentConfiguration;
@@ -51,17 +54,36 @@ import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
 import static net.sourceforge.jnlp.util.FileTestUtils.assertNoFileLeak;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class JNLPClassLoaderTest extends NoStdOutErrTest {
@@ -329,6 +351,257 @@ public class JNLPClassLoaderTest extends NoStdOutErrTest {
         Assert.assertNull(exs[1]);
     }
 
+    @Test
+    public void classDefinedAfterMissIsFound() throws Exception {
+        File tempDirectory = FileTestUtils.createTempDirectory();
+        File jarLocation = new File(tempDirectory, "test-miss.jar");
+        FileTestUtils.createJarWithContents(jarLocation /* No contents */);
+
+        final DummyJNLPFileWithJar jnlpFile = new DummyJNLPFileWithJar(jarLocation);
+        final JNLPClassLoader classLoader = new JNLPClassLoader(jnlpFile, UpdatePolicy.ALWAYS);
+        try {
+            classLoader.loadClass("generated.Defined");
+            fail("class must not exist yet");
+        } catch (ClassNotFoundException expected) {
+        }
+
+        // as a generated proxy is defined, without adding a jar
+        byte[] bytes = createEmptyClass("generated/Defined");
+        Method defineClass = ClassLoader.class.getDeclaredMethod("defineClass", String.class, byte[].class, int.class, int.class);
+        defineClass.setAccessible(true);
+        Class<?> defined = (Class<?>) defineClass.invoke(classLoader, "generated.Defined", bytes, 0, bytes.length);
+
+        assertEquals(defined, classLoader.loadClass("generated.Defined"));
+    }
+
+    @Test
+    public void concurrentCodeSourceSecurityWaitsForJar() throws Exception {
+        File tempDirectory = FileTestUtils.createTempDirectory();
+        File jarLocation = new File(tempDirectory, "test-main.jar");
+        File otherJarLocation = new File(tempDirectory, "test-other.jar");
+        // with contents and without signatures, so no trust dialog is shown
+        File content = File.createTempFile("dummy", "content", tempDirectory);
+        FileTestUtils.createJarWithContents(jarLocation, content);
+        FileTestUtils.createJarWithContents(otherJarLocation, content);
+
+        final DummyJNLPFileWithJar jnlpFile = new DummyJNLPFileWithJar(jarLocation);
+        final JNLPClassLoader classLoader = new JNLPClassLoader(jnlpFile, UpdatePolicy.ALWAYS);
+        final URL other = otherJarLocation.toURI().toURL();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<SecurityDesc>> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<SecurityDesc>() {
+                    @Override
+                    public SecurityDesc call() throws Exception {
+                        start.await();
+                        return classLoader.getCodeSourceSecurity(other);
+                    }
+                }));
+            }
+            start.countDown();
+            // every thread gets the security of the jar, not only the one adding it
+            for (Future<SecurityDesc> result : results) {
+                assertNotNull(result.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void activatedJarsKeepTheirOrder() throws Exception {
+        File tempDirectory = FileTestUtils.createTempDirectory();
+        File first = new File(tempDirectory, "first.jar");
+        File nested = new File(tempDirectory, "nested.jar");
+        File broken = new File(tempDirectory, "broken.jar");
+        File last = new File(tempDirectory, "last.jar");
+        createJar(first, "first/a.txt", "a".getBytes(StandardCharsets.UTF_8),
+                "META-INF/INDEX.LIST", "JarIndex-Version: 1.0\n\nfirst.jar\nfirst\n\n".getBytes(StandardCharsets.UTF_8));
+        createJar(nested, "inner.jar", createJarBytes("inner/a.txt", "inner".getBytes(StandardCharsets.UTF_8)));
+        createJar(broken, "inner-broken.jar", createJarBytes("inner/b.txt", "broken".getBytes(StandardCharsets.UTF_8)),
+                "broken/a.txt", "broken".getBytes(StandardCharsets.UTF_8));
+        // the nested jar of this jar can not be extracted, so its scan fails
+        assertTrue(new File(broken + ".nested").createNewFile());
+        createJar(last, "last/a.txt", "last".getBytes(StandardCharsets.UTF_8),
+                "META-INF/INDEX.LIST", "JarIndex-Version: 1.0\n\nlast.jar\nlast\n\n".getBytes(StandardCharsets.UTF_8));
+
+        final DummyJNLPFileWithJar jnlpFile = new DummyJNLPFileWithJar(first, nested, broken, last);
+        final JNLPClassLoader classLoader = new JNLPClassLoader(jnlpFile, UpdatePolicy.ALWAYS);
+
+        // the jars are scanned in parallel, but added in the order of the list
+        assertEquals(Arrays.asList(first.toURI().toURL(), new URL(nested.toURI().toURL() + "!inner.jar"), nested.toURI().toURL(), last.toURI().toURL()),
+                Arrays.asList(classLoader.getURLs()));
+        assertTrue(classLoader.resourceAvailableLocally("first/a.txt"));
+        assertTrue(classLoader.resourceAvailableLocally("inner.jar"));
+        assertTrue(classLoader.resourceAvailableLocally("last/a.txt"));
+        assertFalse(classLoader.resourceAvailableLocally("broken/a.txt"));
+
+        Field field = JNLPClassLoader.class.getDeclaredField("jarIndexes");
+        field.setAccessible(true);
+        List<?> jarIndexes = (List<?>) field.get(classLoader);
+        assertEquals(2, jarIndexes.size());
+        assertEquals(Collections.singletonList("first.jar"), ((JarIndexAccess) jarIndexes.get(0)).get("first"));
+        assertEquals(Collections.singletonList("last.jar"), ((JarIndexAccess) jarIndexes.get(1)).get("last"));
+    }
+
+    @Test
+    public void extensionLoadersAreInOrderOfTheExtensions() throws Exception {
+        File tempDirectory = FileTestUtils.createTempDirectory();
+        createJarWithResource(tempDirectory, "main.jar", "main.txt", "main");
+        createJarWithResource(tempDirectory, "a.jar", "order.txt", "a");
+        createJarWithResource(tempDirectory, "b.jar", "order.txt", "b");
+        createJarWithResource(tempDirectory, "c.jar", "shared.txt", "c");
+        // a and b both have the extension c
+        writeJnlp(tempDirectory, "c.jnlp", "<jar href=\"c.jar\"/>", "<component-desc/>");
+        writeJnlp(tempDirectory, "a.jnlp", "<jar href=\"a.jar\"/><extension href=\"c.jnlp\"/>", "<component-desc/>");
+        writeJnlp(tempDirectory, "b.jnlp", "<jar href=\"b.jar\"/><extension href=\"c.jnlp\"/>", "<component-desc/>");
+        URL main = writeJnlp(tempDirectory, "main.jnlp", "<jar href=\"main.jar\" main=\"true\"/><extension href=\"a.jnlp\"/><extension href=\"b.jnlp\"/>",
+                "<application-desc main-class=\"Main\"/>");
+
+        final JNLPClassLoader classLoader = new JNLPClassLoader(new JNLPFile(main), UpdatePolicy.ALWAYS);
+
+        assertEquals("a", readResource(classLoader, "order.txt"));
+        assertEquals("c", readResource(classLoader, "shared.txt"));
+        assertEquals("main", readResource(classLoader, "main.txt"));
+    }
+
+    @Test
+    public void failingExtensionIsSkipped() throws Exception {
+        File tempDirectory = FileTestUtils.createTempDirectory();
+        createJarWithResource(tempDirectory, "main.jar", "main.txt", "main");
+        createJarWithResource(tempDirectory, "a.jar", "a.txt", "a");
+        writeJnlp(tempDirectory, "a.jnlp", "<jar href=\"a.jar\"/>", "<component-desc/>");
+        writeJnlp(tempDirectory, "broken.jnlp", "<jar href=\"a.jar\"", "<component-desc/>");
+        URL main = writeJnlp(tempDirectory, "main.jnlp", "<jar href=\"main.jar\" main=\"true\"/><extension href=\"missing.jnlp\"/>"
+                + "<extension href=\"broken.jnlp\"/><extension href=\"a.jnlp\"/>", "<application-desc main-class=\"Main\"/>");
+
+        final JNLPClassLoader classLoader = new JNLPClassLoader(new JNLPFile(main), UpdatePolicy.ALWAYS);
+
+        // the extensions which cannot be parsed are left out, the others are there
+        assertEquals("a", readResource(classLoader, "a.txt"));
+        assertEquals("main", readResource(classLoader, "main.txt"));
+    }
+
+    @Test
+    public void concurrentLoadClassOfLazyJar() throws Exception {
+        File tempDirectory = FileTestUtils.createTempDirectory();
+        createJarWithResource(tempDirectory, "main.jar", "main.txt", "main");
+        final List<String> names = Arrays.asList("LazyA", "LazyB", "LazyC", "LazyD");
+        List<File> classes = new ArrayList<>();
+        for (String name : names) {
+            File classFile = new File(tempDirectory, name + ".class");
+            Files.write(classFile.toPath(), createEmptyClass(name));
+            classes.add(classFile);
+        }
+        FileTestUtils.createJarWithContents(new File(tempDirectory, "lazy.jar"), classes.toArray(new File[classes.size()]));
+        URL main = writeJnlp(tempDirectory, "main.jnlp", "<jar href=\"main.jar\" main=\"true\"/><jar href=\"lazy.jar\" download=\"lazy\"/>",
+                "<application-desc main-class=\"Main\"/>");
+
+        final JNLPClassLoader classLoader = new JNLPClassLoader(new JNLPFile(main), UpdatePolicy.ALWAYS);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Class<?>>> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 8; i++) {
+                final String name = names.get(i % names.size());
+                results.add(executor.submit(new Callable<Class<?>>() {
+                    @Override
+                    public Class<?> call() throws Exception {
+                        start.await();
+                        return classLoader.loadClass(name);
+                    }
+                }));
+            }
+            start.countDown();
+            // every thread gets the class, and the same class for the same name
+            for (int i = 0; i < results.size(); i++) {
+                Class<?> loaded = results.get(i).get(60, TimeUnit.SECONDS);
+                assertEquals(names.get(i % names.size()), loaded.getName());
+                assertEquals(classLoader.loadClass(loaded.getName()), loaded);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void createJar(File jar, Object... namesAndContents) throws IOException {
+        Files.write(jar.toPath(), createJarBytes(namesAndContents));
+    }
+
+    private static byte[] createJarBytes(Object... namesAndContents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(bytes)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                out.putNextEntry(new JarEntry((String) namesAndContents[i]));
+                out.write((byte[]) namesAndContents[i + 1]);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void createJarWithResource(File directory, String jarName, String resourceName, String content) throws Exception {
+        File resource = new File(FileTestUtils.createTempDirectory(), resourceName);
+        Files.write(resource.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        FileTestUtils.createJarWithContents(new File(directory, jarName), resource);
+    }
+
+    private static URL writeJnlp(File directory, String name, String resources, String descriptor) throws IOException {
+        File jnlp = new File(directory, name);
+        String content = "<?xml version=\"1.0\"?>\n"
+                + "<jnlp spec=\"1.0\" codebase=\"" + directory.toURI().toURL() + "\" href=\"" + name + "\">\n"
+                + "<information><title>" + name + "</title><vendor>test</vendor></information>\n"
+                + "<resources>" + resources + "</resources>\n"
+                + descriptor + "\n"
+                + "</jnlp>\n";
+        Files.write(jnlp.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return jnlp.toURI().toURL();
+    }
+
+    private static String readResource(ClassLoader classLoader, String name) throws IOException {
+        URL resource = classLoader.getResource(name);
+        assertNotNull(name, resource);
+        try (InputStream in = resource.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] createEmptyClass(String internalName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // minor version
+        out.writeShort(50); // major version, Java 6
+        out.writeShort(5); // constant pool count
+        out.writeByte(7); // #1 class #2
+        out.writeShort(2);
+        out.writeByte(1); // #2 utf8
+        out.writeUTF(internalName);
+        out.writeByte(7); // #3 class #4
+        out.writeShort(4);
+        out.writeByte(1); // #4 utf8
+        out.writeUTF("java/lang/Object");
+        out.writeShort(0x0021); // public super
+        out.writeShort(1); // this class
+        out.writeShort(3); // super class
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(0); // methods
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
     @Test
     @Bug(id = "PR3417")
     /**
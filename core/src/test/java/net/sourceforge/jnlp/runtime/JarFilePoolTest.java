@@ -0,0 +1,120 @@
+package net.sourceforge.jnlp.runtime;
+
+import net.sourceforge.jnlp.util.JarFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class JarFilePoolTest {
+
+    private File jar;
+    private JarFilePool pool;
+
+    @Before
+    public void setUp() throws IOException {
+        jar = File.createTempFile("itw-pool", ".jar");
+        writeJar(jar, "a/B.class");
+        pool = new JarFilePool();
+    }
+
+    @After
+    public void tearDown() {
+        jar.delete();
+    }
+
+    private static void writeJar(File file, String entry) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry(entry));
+            out.write(new byte[]{1, 2, 3});
+            out.closeEntry();
+        }
+    }
+
+    @Test
+    public void testJarIsSharedUntilLastRelease() throws IOException {
+        JarFile first = pool.acquire(jar);
+        JarFile second = pool.acquire(jar);
+        assertSame(first, second);
+        assertEquals(1, pool.size());
+
+        first.close();
+        assertNotNull(second.getEntry("a/B.class"));
+        assertEquals(1, pool.size());
+
+        second.close();
+        assertEquals(0, pool.size());
+        try {
+            second.getEntry("a/B.class");
+            fail("jar should be closed");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReplacedJarIsOpenedAgain() throws IOException {
+        JarFile old = pool.acquire(jar);
+        long stamp = jar.lastModified();
+        writeJar(jar, "a/much/longer/name/of/Other.class");
+        jar.setLastModified(stamp + 10000);
+
+        JarFile current = pool.acquire(jar);
+        assertNotSame(old, current);
+        assertNotNull(current.getEntry("a/much/longer/name/of/Other.class"));
+
+        old.close();
+        assertNotNull(current.getEntry("a/much/longer/name/of/Other.class"));
+        current.close();
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void testRetrievedJarKeepsClassPathOfPooledJar() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "lib.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            out.putNextEntry(new ZipEntry("a/B.class"));
+            out.closeEntry();
+        }
+        URL remote = new URL("http://localhost/pool/class-path.jar");
+        CachedJarFileCallback.getInstance().addMapping(remote, jar.toURI().toURL());
+
+        JarFile pooled = JarFilePool.getInstance().acquire(jar);
+        // the class loader gets a view of the pooled jar without the Class-Path
+        java.util.jar.JarFile retrieved = CachedJarFileCallback.getInstance().retrieve(remote);
+        try {
+            assertNull(retrieved.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH));
+            assertEquals("lib.jar", pooled.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH));
+            assertNotNull(retrieved.getJarEntry("a/B.class"));
+        } finally {
+            pooled.close();
+        }
+
+        // the view holds the pooled jar open until it is closed itself
+        assertNotNull(pooled.getEntry("a/B.class"));
+        retrieved.close();
+        try {
+            pooled.getEntry("a/B.class");
+            fail("jar should be closed");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package net.sourceforge.jnlp.runtime;
+
+import net.sourceforge.jnlp.JARDesc;
+import net.sourceforge.jnlp.config.PathsAndFiles;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JarPackageIndexTest {
+
+    @Test
+    public void testPackageOfClass() {
+        assertEquals("org/example", JarPackageIndex.getPackageOfClass("org.example.Main"));
+        assertEquals("org/example", JarPackageIndex.getPackageOfClass("org.example.Main$Inner"));
+        assertEquals("", JarPackageIndex.getPackageOfClass("Main"));
+    }
+
+    @Test
+    public void testPackageOfResource() {
+        assertEquals("org/example", JarPackageIndex.getPackageOfResource("org/example/icon.png"));
+        assertEquals("", JarPackageIndex.getPackageOfResource("icon.png"));
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        Set<String> packages = new HashSet<>(Arrays.asList("org/example", "org/example/impl", ""));
+        String index = JarPackageIndex.encode(42, packages);
+        assertEquals("42:,org/example,org/example/impl", index);
+        assertEquals(packages, JarPackageIndex.decode(index, 42));
+    }
+
+    @Test
+    public void testDecodeOfReplacedJarIsEmpty() {
+        String index = JarPackageIndex.encode(42, Collections.singleton("org/example"));
+        assertTrue(JarPackageIndex.decode(index, 43).isEmpty());
+        assertTrue(JarPackageIndex.decode(null, 42).isEmpty());
+        assertTrue(JarPackageIndex.decode("garbage", 42).isEmpty());
+    }
+
+    @Test
+    public void testActivatedJar() throws Exception {
+        JARDesc jar = new JARDesc(new URL("http://localhost/a.jar"), null, null, false, false, false, false);
+        JarPackageIndex index = new JarPackageIndex();
+        assertFalse(index.isActivated("org/example"));
+
+        index.addActivatedJar(jar, null, Arrays.asList("META-INF/", "META-INF/MANIFEST.MF", "org/example/", "org/example/Main.class"));
+        assertTrue(index.isActivated("org/example"));
+        assertTrue(index.isActivated("META-INF"));
+        assertFalse(index.isActivated("org"));
+        assertTrue(index.isKnownToContain(jar, "org/example"));
+        assertFalse(index.isKnownToContain(jar, "org/other"));
+    }
+
+    @Test
+    public void testJarNotCachedGetsNoCacheFile() throws Exception {
+        String originalCacheDir = PathsAndFiles.CACHE_DIR.getFullPath();
+        File cacheDir = Files.createTempDirectory("itw-index").toFile();
+        PathsAndFiles.CACHE_DIR.setValue(cacheDir.getAbsolutePath());
+        try {
+            JARDesc jar = new JARDesc(new URL("http://localhost/not-cached.jar"), null, null, true, false, false, false);
+            JarPackageIndex index = new JarPackageIndex();
+
+            assertFalse(index.isKnownToContain(jar, "org/example"));
+            // the lookup of a lazy jar not downloaded yet leaves the cache as it is
+            try (Stream<Path> files = Files.walk(cacheDir.toPath())) {
+                Iterator<Path> it = files.iterator();
+                while (it.hasNext()) {
+                    Path file = it.next();
+                    assertFalse(file.toString(), file.getFileName().toString().startsWith("not-cached.jar"));
+                }
+            }
+        } finally {
+            PathsAndFiles.CACHE_DIR.setValue(originalCacheDir);
+            FileUtils.recursiveDelete(cacheDir, cacheDir);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package net.sourceforge.jnlp.runtime;
+
+import net.sourceforge.jnlp.JARDesc;
+import net.sourceforge.jnlp.cache.CacheUtil;
+import net.sourceforge.jnlp.config.PathsAndFiles;
+import net.sourceforge.jnlp.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LazyJarTraceTest {
+
+    private static final Executor UNUSED = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private static JARDesc jar(String name, String part, boolean lazy) throws Exception {
+        return new JARDesc(new URL("http://localhost/" + name), null, part, lazy, false, false, false);
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        Set<String> jars = new HashSet<>(Arrays.asList("http://localhost/b.jar", "http://localhost/a.jar"));
+        String trace = LazyJarTrace.encode(jars);
+        assertEquals("http://localhost/a.jar http://localhost/b.jar", trace);
+        assertEquals(jars, LazyJarTrace.decode(trace));
+        assertTrue(LazyJarTrace.decode(null).isEmpty());
+        assertTrue(LazyJarTrace.decode(" ").isEmpty());
+    }
+
+    @Test
+    public void testNothingUsedWithoutTrace() throws Exception {
+        JARDesc[] jars = {jar("main.jar", null, false), jar("lazy.jar", null, true)};
+        LazyJarTrace trace = new LazyJarTrace(UNUSED);
+        trace.load(null, jars);
+        assertTrue(trace.getPreviouslyUsed(jars).isEmpty());
+    }
+
+    @Test
+    public void testClassOfLazyJarIsRecorded() throws Exception {
+        URL location = LazyJarTraceTest.class.getProtectionDomain().getCodeSource().getLocation();
+        JARDesc lazy = new JARDesc(location, null, null, true, false, false, false);
+        LazyJarTrace trace = new LazyJarTrace(UNUSED);
+        trace.load(null, new JARDesc[]{lazy});
+
+        trace.classDefined(String.class);
+        assertTrue(trace.getUsed().isEmpty());
+
+        trace.classDefined(LazyJarTraceTest.class);
+        assertEquals(Collections.singleton(location.toString()), trace.getUsed());
+    }
+
+    @Test
+    public void testTraceIsWrittenByOneWriter() throws Exception {
+        String originalCacheDir = PathsAndFiles.CACHE_DIR.getFullPath();
+        File cacheDir = Files.createTempDirectory("itw-trace").toFile();
+        PathsAndFiles.CACHE_DIR.setValue(cacheDir.getAbsolutePath());
+        try {
+            URL first = LazyJarTraceTest.class.getProtectionDomain().getCodeSource().getLocation();
+            URL second = Test.class.getProtectionDomain().getCodeSource().getLocation();
+            JARDesc main = jar("trace-main.jar", null, false);
+            JARDesc[] jars = {main,
+                new JARDesc(first, null, null, true, false, false, false),
+                new JARDesc(second, null, null, true, false, false, false)};
+
+            final List<Runnable> scheduled = new ArrayList<>();
+            final List<String> written = new ArrayList<>();
+            LazyJarTrace trace = new LazyJarTrace(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    scheduled.add(command);
+                }
+            }) {
+                @Override
+                void write(JARDesc jar, String encoded) {
+                    written.add(encoded);
+                }
+            };
+            trace.load(main, jars);
+
+            // changes arriving before the writer runs are written together
+            trace.classDefined(LazyJarTraceTest.class);
+            trace.classDefined(Test.class);
+            assertEquals(1, scheduled.size());
+            scheduled.get(0).run();
+            assertEquals(Collections.singletonList(LazyJarTrace.encode(trace.getUsed())), written);
+            assertEquals(2, trace.getUsed().size());
+        } finally {
+            PathsAndFiles.CACHE_DIR.setValue(originalCacheDir);
+            FileUtils.recursiveDelete(cacheDir, cacheDir);
+        }
+    }
+
+    @Test
+    public void testTraceIsClearedOnceMainClassIsDefined() throws Exception {
+        String originalCacheDir = PathsAndFiles.CACHE_DIR.getFullPath();
+        File cacheDir = Files.createTempDirectory("itw-trace").toFile();
+        PathsAndFiles.CACHE_DIR.setValue(cacheDir.getAbsolutePath());
+        try {
+            JARDesc main = jar("cleared-main.jar", null, false);
+            JARDesc lazy = jar("cleared-lazy.jar", null, true);
+            CacheUtil.storeLazyJarTrace(main.getLocation(), null, lazy.getLocation().toString());
+
+            final List<String> written = new ArrayList<>();
+            LazyJarTrace trace = new LazyJarTrace(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            }) {
+                @Override
+                void write(JARDesc jar, String encoded) {
+                    written.add(encoded);
+                }
+            };
+            trace.load(main, new JARDesc[]{main, lazy});
+            assertEquals(Collections.singleton(lazy), trace.getPreviouslyUsed(new JARDesc[]{main, lazy}));
+
+            // a run which uses no lazy jar does not keep the old prediction
+            trace.mainClassDefined();
+            trace.mainClassDefined();
+            assertEquals(Collections.singletonList(""), written);
+        } finally {
+            PathsAndFiles.CACHE_DIR.setValue(originalCacheDir);
+            FileUtils.recursiveDelete(cacheDir, cacheDir);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package net.sourceforge.jnlp.runtime;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NegativeLookupCacheTest {
+
+    @Test
+    public void testMissIsKnownForSameStamp() {
+        NegativeLookupCache cache = new NegativeLookupCache();
+        assertFalse(cache.isKnownMiss("a.B", 1));
+        cache.recordMiss("a.B", 1, 1);
+        assertTrue(cache.isKnownMiss("a.B", 1));
+        assertFalse(cache.isKnownMiss("a.C", 1));
+    }
+
+    @Test
+    public void testMissIsStaleAfterJarsWereAdded() {
+        NegativeLookupCache cache = new NegativeLookupCache();
+        cache.recordMiss("a.B", 1, 1);
+        assertFalse(cache.isKnownMiss("a.B", 2));
+    }
+
+    @Test
+    public void testMissIsNotRecordedIfJarsWereAddedDuringLookup() {
+        NegativeLookupCache cache = new NegativeLookupCache();
+        cache.recordMiss("a.B", 1, 2);
+        assertFalse(cache.isKnownMiss("a.B", 1));
+        assertFalse(cache.isKnownMiss("a.B", 2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        NegativeLookupCache cache = new NegativeLookupCache(10);
+        for (int i = 0; i < 100; i++) {
+            cache.recordMiss("a.B" + i, 1, 1);
+        }
+        assertEquals(10, cache.size());
+        assertTrue(cache.isKnownMiss("a.B99", 1));
+    }
+}
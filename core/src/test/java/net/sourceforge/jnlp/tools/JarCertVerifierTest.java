@@ -38,16 +38,25 @@ exception statement from your version.
 package net.sourceforge.jnlp.tools;
 
 import net.sourceforge.jnlp.JARDesc;
+import net.sourceforge.jnlp.cache.ResourceTracker;
 import net.sourceforge.jnlp.tools.JarCertVerifier.VerifyResult;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
 import java.security.CodeSigner;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Vector;
 import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
 
 import static net.sourceforge.jnlp.runtime.Translator.R;
 import static org.junit.Assert.assertFalse;
@@ -516,4 +525,75 @@ public class JarCertVerifierTest {
                 jcv.getCertsList().contains(alphaSigner.getSignerCertPath()));
     }
 
+    private static File writeJar(boolean manifest, String entry) throws IOException {
+        File jar = File.createTempFile("itw-verifier", ".jar");
+        try (JarOutputStream out = manifest
+                ? new JarOutputStream(new FileOutputStream(jar), new Manifest())
+                : new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry(entry));
+            out.write(new byte[]{1, 2, 3});
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    @Test
+    public void testManyJarsAreVerified() throws Exception {
+        final File unsigned = writeJar(false, "a/B.class");
+        final File trivial = writeJar(true, "META-INF/C.txt");
+        try {
+            final JARDesc unsignedJar = new JARDesc(unsigned.toURI().toURL(), null, null, false, false, false, false);
+            final JARDesc trivialJar = new JARDesc(trivial.toURI().toURL(), null, null, false, false, false, false);
+            ResourceTracker tracker = new ResourceTracker() {
+                @Override
+                public File getCacheFile(URL location) {
+                    return location.equals(unsignedJar.getLocation()) ? unsigned : trivial;
+                }
+            };
+
+            JarCertVerifier jcv = new JarCertVerifier(null);
+            jcv.add(Arrays.asList(unsignedJar, trivialJar, unsignedJar), tracker);
+
+            Assert.assertFalse("A jar without manifest should be considered unsigned.", jcv.allJarsSigned());
+            Assert.assertEquals(2, jcv.getJarSignableEntries().size());
+            Assert.assertEquals(Integer.valueOf(1), jcv.getJarSignableEntries().get(unsigned.getAbsolutePath()));
+            Assert.assertEquals(Integer.valueOf(0), jcv.getJarSignableEntries().get(trivial.getAbsolutePath()));
+        } finally {
+            unsigned.delete();
+            trivial.delete();
+        }
+    }
+
+    @Test
+    public void testJarsReadWhenDownloadedAreVerified() throws Exception {
+        final File unsigned = writeJar(false, "a/B.class");
+        final File trivial = writeJar(true, "META-INF/C.txt");
+        try {
+            final JARDesc unsignedJar = new JARDesc(unsigned.toURI().toURL(), null, null, false, false, false, false);
+            final JARDesc trivialJar = new JARDesc(trivial.toURI().toURL(), null, null, false, false, false, false);
+            ResourceTracker tracker = new ResourceTracker() {
+                @Override
+                public boolean checkResource(URL location) {
+                    return location.equals(trivialJar.getLocation());
+                }
+
+                @Override
+                public File getCacheFile(URL location) {
+                    return location.equals(unsignedJar.getLocation()) ? unsigned : trivial;
+                }
+            };
+
+            JarCertVerifier jcv = new JarCertVerifier(null);
+            jcv.readWhenDownloaded(Arrays.asList(unsignedJar, trivialJar), tracker);
+            jcv.add(Arrays.asList(unsignedJar, trivialJar), tracker);
+
+            Assert.assertFalse("A jar without manifest should be considered unsigned.", jcv.allJarsSigned());
+            Assert.assertEquals(Integer.valueOf(1), jcv.getJarSignableEntries().get(unsigned.getAbsolutePath()));
+            Assert.assertEquals(Integer.valueOf(0), jcv.getJarSignableEntries().get(trivial.getAbsolutePath()));
+        } finally {
+            unsigned.delete();
+            trivial.delete();
+        }
+    }
+
 }
@@ -0,0 +1,63 @@
+package net.sourceforge.jnlp.tools;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.CodeSigner;
+import java.security.cert.CertPath;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class VerifiedJarTest {
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        CodeSigner alpha = CodeSignerCreator.getOneCodeSigner("CN=Alpha Signer, O=Test", new Date(), 365);
+        CodeSigner beta = CodeSignerCreator.getOneCodeSigner("CN=Beta Signer, O=Test", new Date(), 365);
+        Map<CertPath, Integer> signCount = new LinkedHashMap<>();
+        signCount.put(alpha.getSignerCertPath(), 3);
+        signCount.put(beta.getSignerCertPath(), 1);
+
+        VerifiedJar decoded = VerifiedJar.decode(new VerifiedJar("abc", 3, signCount).encode());
+        assertEquals("abc", decoded.getDigest());
+        assertEquals(3, decoded.getSignableEntries());
+        assertEquals(signCount, decoded.getSignCount());
+    }
+
+    @Test
+    public void testUnsignedEncodeDecode() throws Exception {
+        VerifiedJar decoded = VerifiedJar.decode(new VerifiedJar("abc", 1, new LinkedHashMap<CertPath, Integer>()).encode());
+        assertEquals("abc", decoded.getDigest());
+        assertEquals(1, decoded.getSignableEntries());
+        assertEquals(0, decoded.getSignCount().size());
+    }
+
+    @Test
+    public void testDecodeUnreadable() {
+        assertNull(VerifiedJar.decode(null));
+        assertNull(VerifiedJar.decode(""));
+        assertNull(VerifiedJar.decode("abc"));
+        assertNull(VerifiedJar.decode("abc 1 2:notACertPath"));
+    }
+
+    @Test
+    public void testDigestFollowsContent() throws Exception {
+        File jar = File.createTempFile("itw-verified", ".jar");
+        try {
+            Files.write(jar.toPath(), new byte[]{1, 2, 3});
+            String first = VerifiedJar.digest(jar);
+            assertEquals(64, first.length());
+            assertEquals(first, VerifiedJar.digest(jar));
+            Files.write(jar.toPath(), new byte[]{1, 2, 4});
+            assertNotEquals(first, VerifiedJar.digest(jar));
+        } finally {
+            jar.delete();
+        }
+    }
+}
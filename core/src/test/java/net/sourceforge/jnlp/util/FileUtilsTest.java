@@ -158,4 +158,10 @@ public class FileUtilsTest {
         assertTrue("No owner entry", hasOwner);
     }
 
+    @Test
+    public void testToHexString() throws Exception {
+        assertEquals("", FileUtils.toHexString(new byte[0]));
+        assertEquals("000fa0ff", FileUtils.toHexString(new byte[]{0, 15, (byte) 0xa0, (byte) 0xff}));
+    }
+
 }
@@ -0,0 +1,123 @@
+package net.adoptopenjdk.icedteaweb.xmlparser;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader which leaves out the comments of the xml it reads, so the parser
+ * only sees the relevant xml code. A comment starts with {@code <!--} and
+ * ends with the next {@code -->}, an unterminated comment ends the input.
+ */
+class CommentFilterReader extends FilterReader {
+
+    private static final String COMMENT_START = "<!--";
+
+    /** the read ahead start of a comment which turned out not to be one */
+    private final char[] pending = new char[COMMENT_START.length()];
+    private int pendingStart = 0;
+    private int pendingEnd = 0;
+
+    /** the read ahead character which ended the start of a comment, if {@link #hasUnread} */
+    private int unread;
+    private boolean hasUnread = false;
+
+    CommentFilterReader(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            if (pendingStart < pendingEnd) {
+                return pending[pendingStart++];
+            }
+            final int ch = nextChar();
+            if (ch != '<') {
+                return ch;
+            }
+            pendingStart = 0;
+            pendingEnd = 0;
+            pending[pendingEnd++] = '<';
+            while (pendingEnd < COMMENT_START.length()) {
+                final int next = nextChar();
+                if (next != COMMENT_START.charAt(pendingEnd)) {
+                    // may start a comment itself
+                    unread = next;
+                    hasUnread = true;
+                    break;
+                }
+                pending[pendingEnd++] = (char) next;
+            }
+            if (pendingEnd == COMMENT_START.length()) {
+                pendingEnd = 0;
+                skipComment();
+            }
+        }
+    }
+
+    private int nextChar() throws IOException {
+        if (hasUnread) {
+            hasUnread = false;
+            return unread;
+        }
+        return in.read();
+    }
+
+    private void skipComment() throws IOException {
+        int dashes = 0;
+        while (true) {
+            final int ch = in.read();
+            if (ch == -1 || (ch == '>' && dashes >= 2)) {
+                return;
+            }
+            dashes = ch == '-' ? dashes + 1 : 0;
+        }
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int count = 0;
+        while (count < len) {
+            final int ch = read();
+            if (ch == -1) {
+                return count == 0 ? -1 : count;
+            }
+            cbuf[off + count++] = (char) ch;
+            if (pendingStart == pendingEnd && !hasUnread && !in.ready()) {
+                // do not block for more than is available
+                break;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && read() != -1) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return pendingStart < pendingEnd || hasUnread || in.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+}
@@ -37,6 +37,8 @@ exception statement from your version.
 package net.adoptopenjdk.icedteaweb.xmlparser;
 
 import net.adoptopenjdk.icedteaweb.IcedTeaWebConstants;
+import org.ccil.cowan.tagsoup.AttributesImpl;
+import org.ccil.cowan.tagsoup.ElementType;
 import org.ccil.cowan.tagsoup.HTMLSchema;
 import org.ccil.cowan.tagsoup.Parser;
 import org.ccil.cowan.tagsoup.XMLWriter;
@@ -46,18 +48,21 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.Enumeration;
+import java.util.Locale;
 
 import static net.sourceforge.jnlp.runtime.Translator.R;
 
 /**
  * An specialized {@link XMLParser} that uses TagSoup[1] to parse
- * malformed XML
+ * malformed XML. Well-formed XML is read by {@link StaxXMLParser} directly.
  *
  * Used by net.sourceforge.jnlp.Parser
  *
@@ -67,6 +72,14 @@ public class MalformedXMLParser extends XMLParser {
 
     private final static Logger LOG = LoggerFactory.getLogger(MalformedXMLParser.class);
 
+    private static final String XMLNS_ATTRIBUTE = "xmlns";
+    private static final String HTML_NAMESPACE = "http://www.w3.org/1999/xhtml";
+
+    /** schema of the html elements TagSoup knows, only loaded if TagSoup is available */
+    private static class SchemaHolder {
+        private static final HTMLSchema SCHEMA = new HTMLSchema();
+    }
+
     /**
      * Parses the data from an {@link InputStream} to create a XML tree.
      * Returns a {@link Node} representing the root of the tree.
@@ -78,10 +91,75 @@ public class MalformedXMLParser extends XMLParser {
     @Override
     public Node getRootNode(InputStream input) throws ParseException {
         LOG.info("Using MalformedXMLParser");
-        InputStream xmlInput = xmlizeInputStream(input);
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+        } catch (IOException ex) {
+            throw new ParseException(R("PBadXML"), ex);
+        }
+        // most files are well-formed, only the others need TagSoup
+        try {
+            final XMLElement root = StaxXMLParser.parse(new ByteArrayInputStream(content.toByteArray()));
+            addTagSoupDefaults(root);
+            return new Node(root);
+        } catch (XMLStreamException ex) {
+            LOG.debug("Not well-formed xml, using TagSoup: {}", ex.getMessage());
+        }
+        InputStream xmlInput = xmlizeInputStream(new ByteArrayInputStream(content.toByteArray()));
         return super.getRootNode(xmlInput);
     }
 
+    /**
+     * Changes the tree as TagSoup does with its html schema, so the tree
+     * does not depend on whether TagSoup was needed to read the xml. This
+     * matters for the names the descriptor is read with, like {@code title}
+     * written as {@code Title}, and when trees are compared, like by the
+     * JNLPMatcher. Without TagSoup, the tree is left as it was read.
+     */
+    private static void addTagSoupDefaults(XMLElement root) {
+        final HTMLSchema schema;
+        try {
+            schema = SchemaHolder.SCHEMA;
+        } catch (NoClassDefFoundError e) {
+            return;
+        }
+        root.setAttribute(XMLNS_ATTRIBUTE, HTML_NAMESPACE);
+        addTagSoupDefaults(root, schema);
+    }
+
+    private static void addTagSoupDefaults(XMLElement element, HTMLSchema schema) {
+        // attribute names are always lowercased, one already in lower case wins
+        for (Enumeration<String> e = element.enumerateAttributeNames(); e.hasMoreElements();) {
+            final String name = e.nextElement();
+            final String lowerCase = name.toLowerCase(Locale.ENGLISH);
+            if (!lowerCase.equals(name)) {
+                final Object value = element.getAttribute(name);
+                element.removeAttribute(name);
+                if (element.getAttribute(lowerCase) == null) {
+                    element.setAttribute(lowerCase, value);
+                }
+            }
+        }
+        // the names of known html elements are lowercased and their default attributes added
+        final ElementType type = schema.getElementType(element.getName());
+        if (type != null) {
+            element.setName(type.name());
+            final AttributesImpl defaults = type.atts();
+            for (int i = 0; i < defaults.getLength(); i++) {
+                if (defaults.getValue(i) != null && element.getAttribute(defaults.getLocalName(i)) == null) {
+                    element.setAttribute(defaults.getLocalName(i), defaults.getValue(i));
+                }
+            }
+        }
+        for (Enumeration<XMLElement> e = element.enumerateChildren(); e.hasMoreElements();) {
+            addTagSoupDefaults(e.nextElement(), schema);
+        }
+    }
+
     /**
      * Reads malformed XML from the InputStream original and returns a new
      * InputStream which can be used to read a well-formed version of the input
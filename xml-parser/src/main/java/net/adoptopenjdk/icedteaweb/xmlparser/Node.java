@@ -37,9 +37,15 @@ exception statement from your version.
 
 package net.adoptopenjdk.icedteaweb.xmlparser;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 // this class makes assumptions on how parser calls methods (such
 // as getFirstChild->getNextChild only called by a single loop at
@@ -51,13 +57,24 @@ import java.util.List;
  */
 /* NANO */
 public class Node {
-    private XMLElement xml;
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final XMLElement xml;
+    /** the names of the nodes of the tree, shared by all of them */
+    private final Map<String, ElementName> names;
     private Node next;
     private Node children[];
+    private Map<String, Node[]> childrenByName = null;
+    private ElementName nodeName = null;
     private List <String> attributeNames= null;
 
     public Node(XMLElement xml) {
+        this(xml, new HashMap<String, ElementName>());
+    }
+
+    private Node(XMLElement xml, Map<String, ElementName> names) {
         this.xml = xml;
+        this.names = names;
     }
 
     public Node getFirstChild() {
@@ -89,7 +106,7 @@ public class Node {
             List<Node> list = new ArrayList<Node>();
 
             for (Enumeration<XMLElement> e = xml.enumerateChildren(); e.hasMoreElements();) {
-                list.add(new Node(e.nextElement()));
+                list.add(new Node(e.nextElement(), names));
             }
 
             children = list.toArray(new Node[list.size()]);
@@ -102,6 +119,44 @@ public class Node {
         return children;
     }
 
+    /**
+     * To retrieve the child nodes with a name, without looking at the
+     * others. The children are grouped by name the first time.
+     *
+     * @param name the name of the child nodes, without prefix
+     * @return the child nodes with the name, in document order
+     */
+    public Node[] getChildNodes(String name) {
+        if (childrenByName == null) {
+            final Map<String, List<Node>> grouped = new HashMap<>();
+            for (Node child : getChildNodes()) {
+                final String childName = child.getNodeName().getName();
+                List<Node> group = grouped.get(childName);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    grouped.put(childName, group);
+                }
+                group.add(child);
+            }
+            childrenByName = new HashMap<>();
+            for (Map.Entry<String, List<Node>> group : grouped.entrySet()) {
+                childrenByName.put(group.getKey(), group.getValue().toArray(new Node[group.getValue().size()]));
+            }
+        }
+
+        final Node[] result = childrenByName.get(name);
+        return result == null ? NO_NODES : result;
+    }
+
+    /**
+     * @param name the name of the child node, without prefix
+     * @return the first child node with the name, or null if there is none
+     */
+    public Node getChildNode(String name) {
+        final Node[] result = getChildNodes(name);
+        return result.length == 0 ? null : result[0];
+    }
+
     /**
      * To retrieve all attribute names
      * @return all attribute names of the Node in ArrayList<String>
@@ -111,7 +166,7 @@ public class Node {
             attributeNames= new ArrayList<String>();
 
             for (Enumeration<String> e = xml.enumerateAttributeNames(); e.hasMoreElements();) {
-                attributeNames.add(new String(e.nextElement()));
+                attributeNames.add(e.nextElement());
             }
         }
 
@@ -123,12 +178,15 @@ public class Node {
     }
 
     public ElementName getNodeName() {
-        if (xml.getName() == null) {
-            return new ElementName("");
-        }
-        else {
-            return new ElementName(xml.getName());
+        if (nodeName == null) {
+            final String base = xml.getName() == null ? "" : xml.getName();
+            nodeName = names.get(base);
+            if (nodeName == null) {
+                nodeName = new ElementName(base);
+                names.put(base, nodeName);
+            }
         }
+        return nodeName;
     }
 
 
@@ -137,12 +195,97 @@ public class Node {
         return getNodeName().getOriginal();
     }
 
+    /**
+     * Writes the tree of this node, so {@link #read} can restore it without
+     * parsing the xml again.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        write(xml, out);
+    }
+
+    private static void write(XMLElement elt, DataOutput out) throws IOException {
+        writeString(elt.getName(), out);
+        writeString(elt.getContent(), out);
+        final List<String> names = new ArrayList<>();
+        for (Enumeration<String> e = elt.enumerateAttributeNames(); e.hasMoreElements();) {
+            names.add(e.nextElement());
+        }
+        out.writeInt(names.size());
+        for (String name : names) {
+            writeString(name, out);
+            writeString((String) elt.getAttribute(name), out);
+        }
+        out.writeInt(elt.countChildren());
+        for (Enumeration<XMLElement> e = elt.enumerateChildren(); e.hasMoreElements();) {
+            write(e.nextElement(), out);
+        }
+    }
+
+    /**
+     * Reads a tree written by {@link #write}.
+     *
+     * @param in the input to read from
+     * @return the root of the tree
+     * @throws IOException if reading fails
+     */
+    public static Node read(DataInput in) throws IOException {
+        return new Node(readElement(in));
+    }
+
+    private static XMLElement readElement(DataInput in) throws IOException {
+        final XMLElement elt = new XMLElement();
+        elt.setName(readString(in));
+        elt.setContent(readString(in));
+        final int attributes = in.readInt();
+        for (int i = 0; i < attributes; i++) {
+            elt.setAttribute(readString(in), readString(in));
+        }
+        final int children = in.readInt();
+        for (int i = 0; i < children; i++) {
+            elt.addChild(readElement(in));
+        }
+        return elt;
+    }
+
+    private static void writeString(String s, DataOutput out) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     public static class ElementName {
 
         private final String base;
+        private final String prefix;
+        private final String name;
 
         public ElementName(String base) {
             this.base = base;
+            if (base.contains(":")) {
+                final String[] parts = base.split(":");
+                this.prefix = parts.length > 0 ? parts[0] : "";
+                this.name = parts.length > 1 ? parts[1] : "";
+            } else {
+                this.prefix = "";
+                this.name = base;
+            }
         }
 
         @Override
@@ -160,18 +303,11 @@ public class Node {
         }
 
         public String getName() {
-            if (base.contains(":")) {
-                return base.split(":")[1];
-            } else {
-                return base;
-            }
+            return name;
         }
+
         public String getPrefix() {
-            if (base.contains(":")) {
-                return base.split(":")[0];
-            } else {
-                return "";
-            }
+            return prefix;
         }
 
         private String getOriginal() {
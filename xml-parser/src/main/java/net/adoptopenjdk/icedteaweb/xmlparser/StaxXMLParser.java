@@ -0,0 +1,151 @@
+package net.adoptopenjdk.icedteaweb.xmlparser;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static net.sourceforge.jnlp.runtime.Translator.R;
+
+/**
+ * A {@link XMLParser} which reads well-formed XML with the StAX reader of
+ * the JDK and builds the tree of {@link Node}s while reading, without
+ * serializing the document again.
+ * <p>
+ * The tree is the one NanoXML builds: an element either has children or its
+ * text as content, which is kept as it is, and comments are left out. A
+ * document which does not fit, like one with text between child elements or
+ * with a DTD defining entities, is rejected, so {@link MalformedXMLParser}
+ * can use TagSoup for it instead.
+ * </p>
+ *
+ * Used by net.sourceforge.jnlp.Parser
+ */
+public class StaxXMLParser extends XMLParser {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        // prefixes are part of the names, as for the other parsers
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Parses the data from an {@link InputStream} to create a XML tree.
+     * Returns a {@link Node} representing the root of the tree.
+     *
+     * @param input the {@link InputStream} to read data from
+     * @return root node of document
+     * @throws ParseException if the input is not well-formed XML
+     */
+    @Override
+    public Node getRootNode(final InputStream input) throws ParseException {
+        try {
+            return new Node(parse(input));
+        } catch (XMLStreamException ex) {
+            throw new ParseException(R("PBadXML"), ex);
+        }
+    }
+
+    /**
+     * @param input the {@link InputStream} to read data from
+     * @return the root element of the document
+     * @throws XMLStreamException if the input is not well-formed XML or
+     * does not fit the tree of NanoXML
+     */
+    static XMLElement parse(final InputStream input) throws XMLStreamException {
+        final XMLStreamReader reader = FACTORY.createXMLStreamReader(input);
+        try {
+            final Deque<OpenElement> open = new ArrayDeque<>();
+            XMLElement root = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        final XMLElement element = new XMLElement();
+                        element.setName(getName(reader.getPrefix(), reader.getLocalName()));
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            element.setAttribute(getName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+                        }
+                        if (open.isEmpty()) {
+                            root = element;
+                        } else {
+                            open.peek().addChild(element, reader);
+                        }
+                        open.push(new OpenElement(element));
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (!open.isEmpty()) {
+                            open.peek().addText(reader);
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        open.pop().close();
+                        break;
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        throw new XMLStreamException("Unresolved entity " + reader.getLocalName(), reader.getLocation());
+                    default:
+                        // comments, processing instructions and the DTD are left out
+                        break;
+                }
+            }
+            return root;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String getName(String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty() || localName.startsWith(prefix + ":")) {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+
+    /**
+     * An element which is still read, together with its text so far.
+     */
+    private static class OpenElement {
+
+        private final XMLElement element;
+        private final StringBuilder text = new StringBuilder();
+        private boolean hasText = false;
+
+        OpenElement(XMLElement element) {
+            this.element = element;
+        }
+
+        void addChild(XMLElement child, XMLStreamReader reader) throws XMLStreamException {
+            if (hasText) {
+                throw new XMLStreamException("Text next to child elements of " + element.getName(), reader.getLocation());
+            }
+            element.addChild(child);
+        }
+
+        void addText(XMLStreamReader reader) throws XMLStreamException {
+            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            if (!hasText && !reader.isWhiteSpace()) {
+                if (element.countChildren() > 0) {
+                    throw new XMLStreamException("Text next to child elements of " + element.getName(), reader.getLocation());
+                }
+                hasText = true;
+            }
+        }
+
+        void close() {
+            // whitespace only is no content, as for NanoXML
+            if (hasText) {
+                element.setContent(text.toString());
+            }
+        }
+    }
+}
@@ -35,8 +35,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintStream;
 import java.io.Reader;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -195,10 +193,6 @@ public class XMLElement {
      */
     private char charReadTooMuch;
 
-    /**
-     * Character read too much for the comment remover.
-     */
-    private char sanitizeCharReadTooMuch;
     
    /**
      * Whether the BOM header appeared
@@ -361,6 +355,28 @@ public class XMLElement {
         this.attributes.put(name, value.toString());
     }
 
+    /**
+     * Removes an attribute.
+     *
+     * @param name
+     *     The name of the attribute.
+     *
+     * <dl><dt><b>Preconditions:</b></dt><dd>
+     * <ul><li>{@code name != null}</li>
+     * </ul></dd></dl>
+     *
+     * <dl><dt><b>Postconditions:</b></dt><dd>
+     * <ul><li>{@linkplain #getAttribute(java.lang.String) getAttribute(name)}
+     *         =&gt; {@code null}</li>
+     * </ul></dd></dl>
+     */
+    public void removeAttribute(String name) {
+        if (this.ignoreCase) {
+            name = name.toUpperCase();
+        }
+        this.attributes.remove(name);
+    }
+
     /**
      * @return the number of child elements of the element.
      *
@@ -1222,117 +1238,6 @@ public class XMLElement {
         return new XMLParseException(this.getName(), this.parserLineNr, msg);
     }
 
-    /**
-     * Reads an xml file and removes the comments, leaving only relevant
-     * xml code.
-     *
-     * @param isr The reader of the {@link java.io.InputStream} containing the xml.
-     * @param pout The {@link java.io.PipedOutputStream} that will be receiving the
-     *             filtered xml file.
-     */
-    public void sanitizeInput(Reader isr, OutputStream pout) {
-        StringBuilder line = new StringBuilder();
-        try (PrintStream out = new PrintStream(pout)) {
-            this.sanitizeCharReadTooMuch = '\0';
-            this.reader = isr;
-            this.parserLineNr = 0;
-            int newline = 2;
-            char prev = ' ';
-
-            while (true) {
-                char ch;
-                if (this.sanitizeCharReadTooMuch != '\0') {
-                    ch = this.sanitizeCharReadTooMuch;
-                    this.sanitizeCharReadTooMuch = '\0';
-                } else {
-
-                    int i = this.reader.read();
-                    if (i == -1) {
-                        // no character in buffer, and nothing read
-                        out.flush();
-                        break;
-                    } else if (i == 10) {
-                        ch = '\n';
-                    } else {
-                        ch = (char) i;
-                    }
-                }
-
-                char next;
-                int i = this.reader.read();
-                if (i == -1) {
-                    // character in buffer and nothing read. write out
-                    // what's in the buffer
-                    out.print(ch);
-                    out.flush();
-                    if (ch == 10) {
-                        //LOG.debug(line.toString());
-                        line = new StringBuilder("line: " + newline + " ");
-                        newline++;
-                    } else {
-                        line.append(ch);
-                    }
-                    break;
-                } else if (i == 10) {
-                    next = '\n';
-                } else {
-                    next = (char) i;
-                }
-
-                this.sanitizeCharReadTooMuch = next;
-
-                // If the next chars are !--, then we've hit a comment tag,
-                // and should skip it.
-                if (ch == '<' && sanitizeCharReadTooMuch == '!') {
-                    ch = (char) this.reader.read();
-                    if (ch == '-') {
-                        ch = (char) this.reader.read();
-                        if (ch == '-') {
-                            this.skipComment();
-                            this.sanitizeCharReadTooMuch = '\0';
-                        } else {
-                            out.print('<');
-                            out.print('!');
-                            out.print('-');
-                            this.sanitizeCharReadTooMuch = ch;
-                            line.append("<");
-                            line.append("!");
-                            line.append("-");
-                        }
-                    } else {
-                        out.print('<');
-                        out.print('!');
-                        this.sanitizeCharReadTooMuch = ch;
-                        line.append("<");
-                        line.append("!");
-                    }
-                }
-                // Otherwise we haven't hit a comment, and we should write ch.
-                else {
-                    out.print(ch);
-                    if (ch == 10) {
-                        //LOG.debug(line.toString());
-                        line = new StringBuilder("line: " + newline + " ");
-                        newline++;
-                    } else {
-                        line.append(ch);
-                    }
-                }
-                prev = next;
-            }
-            isr.close();
-        } catch (Exception e) {
-            // Print the stack trace here -- xml.parseFromReader() will
-            // throw the ParseException if something goes wrong.
-            throw new RuntimeException("Error in XML", e);
-            //LOG.error("ERROR", e);
-        } finally {
-            //LOG.debug("");//force new line in all cases
-            //LOG.debug(line.toString()); //flush remaining line
-
-        }
-    }
-
     public boolean isBOM() {
         return BOM;
     }
@@ -37,15 +37,10 @@ exception statement from your version.
 
 package net.adoptopenjdk.icedteaweb.xmlparser;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 
 import static net.sourceforge.jnlp.runtime.Translator.R;
 
@@ -56,8 +51,6 @@ import static net.sourceforge.jnlp.runtime.Translator.R;
  */
 public class XMLParser {
 
-    private final static Logger LOG = LoggerFactory.getLogger(XMLParser.class);
-
     private static final String ENCODING_UNICODE_LITTLE = "UnicodeLittle";
     private static final String ENCODING_UTF_8 = "UTF-8";
     private static final String ENCODING_UTF_16 = "UTF-16";
@@ -97,23 +90,8 @@ public class XMLParser {
 
             /* NANO */
             final XMLElement xml = new XMLElement();
-            final PipedInputStream pin = new PipedInputStream();
-            final PipedOutputStream pout = new PipedOutputStream(pin);
-            final InputStreamReader isr = new InputStreamReader(bs, getEncoding(bs));
-            // Clean the jnlp xml file of all comments before passing it to the parser.
-            new Thread(
-                    new Runnable() {
-                        @Override
-                        public void run() {
-                            (new XMLElement()).sanitizeInput(isr, pout);
-                            try {
-                                pout.close();
-                            } catch (IOException ioe) {
-                                LOG.error("Error in XML parser", ioe);
-                            }
-                        }
-                    }).start();
-            xml.parseFromReader(new InputStreamReader(pin));
+            // Comments are left out while the xml is parsed.
+            xml.parseFromReader(new CommentFilterReader(new InputStreamReader(bs, getEncoding(bs))));
             return new Node(xml);
         } catch (Exception ex) {
             throw new ParseException(R("PBadXML"), ex);